@@ -0,0 +1,112 @@
+package minchessv0.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import minchessv0.board.Board;
+import minchessv0.eval.Eval;
+import minchessv0.gen.Gen;
+import minchessv0.sort.Sort;
+import minchessv0.util.Magic;
+
+/**
+ * the time and, with -prof gc, the memory per call of the functions the search
+ * spends most of its time in. Each call takes the next position, move or
+ * capture of the corpus. The variants which make a move or generate moves into
+ * an array given to them are the ones the search uses, the others allocate a
+ * new array each call
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HotPathBenchmark {
+
+    @Benchmark
+    public void makeMove(PositionCorpus corpus, Blackhole blackhole) {
+        int i = corpus.nextMove();
+        blackhole.consume(Board.makeMove(corpus.boards[corpus.moveBoards[i]], corpus.moves[i]));
+    }
+
+    @Benchmark
+    public void makeMoveInto(PositionCorpus corpus, Blackhole blackhole) {
+        int i = corpus.nextMove();
+        blackhole.consume(Board.makeMove(corpus.boards[corpus.moveBoards[i]], corpus.moves[i], corpus.newBoard));
+    }
+
+    @Benchmark
+    public void gen(PositionCorpus corpus, Blackhole blackhole) {
+        blackhole.consume(Gen.gen(corpus.boards[corpus.nextBoard()], false, false));
+    }
+
+    @Benchmark
+    public void genTactical(PositionCorpus corpus, Blackhole blackhole) {
+        blackhole.consume(Gen.gen(corpus.boards[corpus.nextBoard()], false, true));
+    }
+
+    @Benchmark
+    public void genLegal(PositionCorpus corpus, Blackhole blackhole) {
+        blackhole.consume(Gen.gen(corpus.boards[corpus.nextBoard()], true, false));
+    }
+
+    @Benchmark
+    public void genInto(PositionCorpus corpus, Blackhole blackhole) {
+        blackhole.consume(Gen.gen(corpus.boards[corpus.nextBoard()], false, corpus.moveList));
+    }
+
+    @Benchmark
+    public void rookMoves(PositionCorpus corpus, Blackhole blackhole) {
+        int i = corpus.nextSquare();
+        blackhole.consume(Magic.rookMoves(i & 63, corpus.occupancy(i >>> 6)));
+    }
+
+    @Benchmark
+    public void bishopMoves(PositionCorpus corpus, Blackhole blackhole) {
+        int i = corpus.nextSquare();
+        blackhole.consume(Magic.bishopMoves(i & 63, corpus.occupancy(i >>> 6)));
+    }
+
+    @Benchmark
+    public void queenMoves(PositionCorpus corpus, Blackhole blackhole) {
+        int i = corpus.nextSquare();
+        blackhole.consume(Magic.queenMoves(i & 63, corpus.occupancy(i >>> 6)));
+    }
+
+    @Benchmark
+    public void eval(PositionCorpus corpus, Blackhole blackhole) {
+        blackhole.consume(corpus.evaluator.eval(corpus.boards[corpus.nextBoard()]));
+    }
+
+    @Benchmark
+    public void see(PositionCorpus corpus, Blackhole blackhole) {
+        int i = corpus.nextCapture();
+        long capture = corpus.captures[i];
+        blackhole.consume(Eval.see(corpus.boards[corpus.captureBoards[i]], (int) capture & Board.SQUARE_BITS, (int) capture >>> Board.TARGET_SQUARE_SHIFT & Board.SQUARE_BITS, corpus.seeBoard));
+    }
+
+    /**
+     * includes copying the unsorted list, as sorting sorts it in place
+     */
+    @Benchmark
+    public void sortNoEval(PositionCorpus corpus, Blackhole blackhole) {
+        int i = corpus.nextBoard();
+        System.arraycopy(corpus.moveLists[i], 0, corpus.moveList, 0, Gen.MAX_MOVELIST_SIZE);
+        Sort.sortNoEval(corpus.boards[i], corpus.moveList);
+        blackhole.consume(corpus.moveList);
+    }
+
+    @Benchmark
+    public void getKey(PositionCorpus corpus, Blackhole blackhole) {
+        blackhole.consume(corpus.key(corpus.nextBoard()));
+    }
+
+}
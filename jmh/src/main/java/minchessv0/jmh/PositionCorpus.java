@@ -0,0 +1,150 @@
+package minchessv0.jmh;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import minchessv0.board.Board;
+import minchessv0.eval.Eval;
+import minchessv0.gen.Gen;
+import minchessv0.test.Perft;
+import minchessv0.util.Piece;
+import minchessv0.util.Value;
+import minchessv0.util.Zobrist;
+
+/**
+ * the positions the benchmarks are run over, the perft positions and a few
+ * middlegame positions, with their legal moves and the captures among them. Each
+ * benchmark call takes the next position, move or capture in turn, so a
+ * benchmark's time is the mean over the corpus rather than the time of one
+ * position the branch predictor has learned
+ */
+@State(Scope.Thread)
+public class PositionCorpus {
+
+    private final static String[] POSITION_FEN = {
+        "r1bqkb1r/pppp1ppp/2n2n2/4p3/2B1P3/5N2/PPPP1PPP/RNBQK2R w KQkq - 4 4",
+        "r1bq1rk1/pp2ppbp/2np1np1/8/3NP3/2N1BP2/PPPQ2PP/R3KB1R w KQ - 3 9",
+        "2r3k1/pp3ppp/2n1b3/3p4/3P4/2PB1N2/P4PPP/1R4K1 w - - 0 20",
+        "2rr3k/pp3pp1/1nnqbN1p/3pN3/2pP4/2P3Q1/PPB4P/R4RK1 w - - 0 1"
+    };
+
+    long[][] boards;
+    long[][] moveLists;
+    int[][] squares;
+    int[] moveBoards;
+    long[] moves;
+    int[] captureBoards;
+    long[] captures;
+    long[] newBoard;
+    long[] seeBoard;
+    long[] moveList;
+    Eval evaluator;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.boards = new long[Perft.POSITION_FEN.length + POSITION_FEN.length][];
+        int boardCount = 0;
+        for(String[] fens : new String[][] { Perft.POSITION_FEN, POSITION_FEN }) {
+            for(String fen : fens) {
+                this.boards[boardCount ++] = Board.fromFen(fen);
+            }
+        }
+        this.moveLists = new long[this.boards.length][];
+        this.squares = new int[this.boards.length][64];
+        int moveCount = 0;
+        int captureCount = 0;
+        for(int i = 0; i < this.boards.length; i ++) {
+            this.moveLists[i] = Gen.gen(this.boards[i], true, false);
+            moveCount += (int) this.moveLists[i][Gen.MOVELIST_SIZE];
+            for(int moveIndex = 0; moveIndex < this.moveLists[i][Gen.MOVELIST_SIZE]; moveIndex ++) {
+                if(isCapture(this.moveLists[i][moveIndex])) captureCount ++;
+            }
+            for(int square = 0; square < 64; square ++) {
+                this.squares[i][square] = Board.getSquare(this.boards[i], square);
+            }
+            if(key(i) != this.boards[i][Board.KEY]) throw new IllegalStateException("Key of position " + (i + 1) + " doesn't match the board's key");
+        }
+        this.moveBoards = new int[moveCount];
+        this.moves = new long[moveCount];
+        this.captureBoards = new int[captureCount];
+        this.captures = new long[captureCount];
+        moveCount = 0;
+        captureCount = 0;
+        for(int i = 0; i < this.boards.length; i ++) {
+            for(int moveIndex = 0; moveIndex < this.moveLists[i][Gen.MOVELIST_SIZE]; moveIndex ++) {
+                long move = this.moveLists[i][moveIndex];
+                this.moveBoards[moveCount] = i;
+                this.moves[moveCount ++] = move;
+                if(!isCapture(move)) continue;
+                this.captureBoards[captureCount] = i;
+                this.captures[captureCount ++] = move;
+            }
+        }
+        this.newBoard = new long[Board.MAX_BITBOARDS];
+        this.seeBoard = new long[Board.MAX_BITBOARDS];
+        this.moveList = new long[Gen.MAX_MOVELIST_SIZE];
+        this.evaluator = new Eval();
+        this.boardIndex = 0;
+        this.moveIndex = 0;
+        this.captureIndex = 0;
+        this.squareIndex = 0;
+    }
+
+    /**
+     * @return the index of the next position
+     */
+    int nextBoard() {
+        if(++ this.boardIndex == this.boards.length) this.boardIndex = 0;
+        return this.boardIndex;
+    }
+
+    /**
+     * @return the index of the next legal move, its position in moveBoards
+     */
+    int nextMove() {
+        if(++ this.moveIndex == this.moves.length) this.moveIndex = 0;
+        return this.moveIndex;
+    }
+
+    /**
+     * @return the index of the next capture, its position in captureBoards
+     */
+    int nextCapture() {
+        if(++ this.captureIndex == this.captures.length) this.captureIndex = 0;
+        return this.captureIndex;
+    }
+
+    /**
+     * @return the next square of the next position, the position being the index
+     *         shifted right by 6 and the square the low 6 bits
+     */
+    int nextSquare() {
+        if(++ this.squareIndex == this.boards.length << 6) this.squareIndex = 0;
+        return this.squareIndex;
+    }
+
+    long occupancy(int boardIndex) {
+        return this.boards[boardIndex][Value.WHITE_BIT] | this.boards[boardIndex][Value.BLACK_BIT];
+    }
+
+    /**
+     * the zobrist key of a position from scratch, as a board's key is set when
+     * it is created from a FEN string
+     */
+    long key(int boardIndex) {
+        long[] board = this.boards[boardIndex];
+        return Zobrist.getKey(this.squares[boardIndex], Board.player(board) == Value.WHITE, Board.kingSide(board, Value.WHITE), Board.queenSide(board, Value.WHITE), Board.kingSide(board, Value.BLACK), Board.queenSide(board, Value.BLACK), Board.enPassantSquare(board));
+    }
+
+    private int boardIndex;
+    private int moveIndex;
+    private int captureIndex;
+    private int squareIndex;
+
+    private static boolean isCapture(long move) {
+        return (move >>> Board.TARGET_PIECE_SHIFT & Piece.TYPE) != 0L;
+    }
+
+}
@@ -308,19 +308,38 @@ public class Board {
      * @return a new board array representing the position after making the move
      */
     public static long[] makeMove(long[] board, long move) {
+        return makeMove(board, move, new long[MAX_BITBOARDS]);
+    }
+
+    /**
+     * make a move into a board array supplied by the caller rather than a new one,
+     * so that a search can reuse one board array for each ply
+     * 
+     * @param board    the board array
+     * @param move     the move to make
+     * @param newBoard the board array to write the position after the move into,
+     *                 may be the board array itself
+     * @return newBoard
+     */
+    public static long[] makeMove(long[] board, long move, long[] newBoard) {
         /*
-         * create a new board array and create copies of the board's bitboards, castling
-         * rights, en passant square, half move clock, full move number, and Zobrist key
-         * as these may be modified by the move
+         * copy the board's bitboards, castling rights, en passant square, half move
+         * clock, full move number, and Zobrist key into the new board array as these
+         * may be modified by the move
          */
-        long[] newBoard = new long[MAX_BITBOARDS];
-        System.arraycopy(board, 0, newBoard, 0, board.length);
+        System.arraycopy(board, 0, newBoard, 0, MAX_BITBOARDS);
         int castling = (int) newBoard[STATUS] >>> CASTLING_SHIFT & CASTLING_BITS;
         int eSquare = enPassantSquare(newBoard);
         int originalESquare = eSquare;
         int halfMoveClock = (int) newBoard[STATUS] >>> HALF_MOVE_CLOCK_SHIFT & HALF_MOVE_CLOCK_BITS;
         int fullMoveNumber = (int) newBoard[STATUS] >>> FULL_MOVE_NUMBER_SHIFT & FULL_MOVE_NUMBER_BITS;
         long key = newBoard[KEY];
+        /*
+         * count the move on the half move clock, captures and pawn moves reset it
+         * below. The clock stops at the largest value its bits can hold, which is
+         * past the fifty move limit
+         */
+        halfMoveClock = Math.min(halfMoveClock + 1, HALF_MOVE_CLOCK_BITS);
         /*
          * get piece information from the move
          */
@@ -576,7 +595,13 @@ public class Board {
          * to set this up, we are passed a board where normally a player would make the
          * next move but we flip the player bit and reset the en passant square since an
          * en passant move is not possible in a null move
+         * the Zobrist key is updated for the change of player and the reset en passant
+         * square so that the position doesn't share a transposition table entry with
+         * the position before the null move
          */
+        int eSquare = enPassantSquare(board);
+        if(eSquare != Value.INVALID) board[KEY] ^= Zobrist.ENPASSANT_FILE[eSquare & Value.FILE];
+        board[KEY] ^= Zobrist.WHITEMOVE;
         board[STATUS] = (board[STATUS] ^ PLAYER_BIT) & ENPASSANT_RESET_BITS;
     }
 
@@ -661,6 +686,24 @@ public class Board {
         return false;
     }
 
+    /**
+     * get all of a player's pieces which attack a square
+     *
+     * @param board  the board array
+     * @param square the square to check
+     * @param player the player whose attackers to find
+     * @return a bitboard of the squares of the player's pieces attacking the square
+     */
+    public static long squareAttackers(long[] board, int square, int player) {
+        int playerBit = player << 3;
+        long allOccupancy = board[Value.WHITE_BIT] | board[Value.BLACK_BIT];
+        return (BB[LEAP_ATTACKS][square] & board[Piece.KNIGHT | playerBit])
+             | (BB[KING_ATTACKS][square] & board[Piece.KING | playerBit])
+             | (BB[PAWN_ATTACKS_PLAYER1 - player][square] & board[Piece.PAWN | playerBit])
+             | (Magic.bishopMoves(square, allOccupancy) & (board[Piece.BISHOP | playerBit] | board[Piece.QUEEN | playerBit]))
+             | (Magic.rookMoves(square, allOccupancy) & (board[Piece.ROOK | playerBit] | board[Piece.QUEEN | playerBit]));
+    }
+
     /**
      * check if a player is in check
      * 
@@ -13,21 +13,16 @@ public class Eval implements Evaluator {
     }
 
     public Eval(long[] board) {
-        this.board = board;
-        this.playerToMove = (int) board[Board.STATUS] & Board.PLAYER_BIT;
-        this.playerOccupancy[0] = board[0];
-        this.playerOccupancy[1] = board[8];
-        this.allOccupancy = this.playerOccupancy[0] | this.playerOccupancy[1];
-        this.playerKingSquare[0] = Long.numberOfTrailingZeros(board[Piece.WHITE_KING]);
-        this.playerKingRank[0] = this.playerKingSquare[0] >>> 3;
-        this.playerKingFile[0] = this.playerKingSquare[0] & 7;
-        this.playerKingSquare[1] = Long.numberOfTrailingZeros(board[Piece.BLACK_KING]);
-        this.playerKingRank[1] = this.playerKingSquare[1] >>> 3;
-        this.playerKingFile[1] = this.playerKingSquare[1] & 7;
-        this.phase = Math.min(0, Math.max(24 - ((Long.bitCount(board[Piece.WHITE_QUEEN]) + Long.bitCount(board[Piece.BLACK_QUEEN])) * 4 +
-                     (Long.bitCount(board[Piece.WHITE_ROOK])  + Long.bitCount(board[Piece.BLACK_ROOK]))  * 2 +
-                     Long.bitCount(board[Piece.WHITE_BISHOP]) + Long.bitCount(board[Piece.BLACK_BISHOP]) +
-                     Long.bitCount(board[Piece.WHITE_KNIGHT]) + Long.bitCount(board[Piece.BLACK_KNIGHT])), 24));
+        setBoard(board);
+    }
+
+    /**
+     * evaluate another position with this evaluator, so that a search can
+     * evaluate every node without creating an evaluator for each
+     */
+    public int eval(long[] board) {
+        setBoard(board);
+        return eval();
     }
 
     @Override
@@ -48,7 +43,14 @@ public class Eval implements Evaluator {
     }
 
     public static int see(long[] board, int startSquare, int targetSquare) {
-        long[] seeBoard = new long[board.length];
+        return see(board, startSquare, targetSquare, new long[board.length]);
+    }
+
+    /**
+     * the static exchange evaluation played out on a scratch board array supplied
+     * by the caller rather than a new one
+     */
+    public static int see(long[] board, int startSquare, int targetSquare, long[] seeBoard) {
         System.arraycopy(board, 0, seeBoard, 0, board.length);
         int seeValue = 0;
         int startPlayer = (int) seeBoard[Board.STATUS] & Board.PLAYER_BIT;
@@ -153,6 +155,24 @@ public class Eval implements Evaluator {
     private int[] playerKingFile = new int[2];
     private int phase;
 
+    private void setBoard(long[] board) {
+        this.board = board;
+        this.playerToMove = (int) board[Board.STATUS] & Board.PLAYER_BIT;
+        this.playerOccupancy[0] = board[0];
+        this.playerOccupancy[1] = board[8];
+        this.allOccupancy = this.playerOccupancy[0] | this.playerOccupancy[1];
+        this.playerKingSquare[0] = Long.numberOfTrailingZeros(board[Piece.WHITE_KING]);
+        this.playerKingRank[0] = this.playerKingSquare[0] >>> 3;
+        this.playerKingFile[0] = this.playerKingSquare[0] & 7;
+        this.playerKingSquare[1] = Long.numberOfTrailingZeros(board[Piece.BLACK_KING]);
+        this.playerKingRank[1] = this.playerKingSquare[1] >>> 3;
+        this.playerKingFile[1] = this.playerKingSquare[1] & 7;
+        this.phase = Math.min(0, Math.max(24 - ((Long.bitCount(board[Piece.WHITE_QUEEN]) + Long.bitCount(board[Piece.BLACK_QUEEN])) * 4 +
+                     (Long.bitCount(board[Piece.WHITE_ROOK])  + Long.bitCount(board[Piece.BLACK_ROOK]))  * 2 +
+                     Long.bitCount(board[Piece.WHITE_BISHOP]) + Long.bitCount(board[Piece.BLACK_BISHOP]) +
+                     Long.bitCount(board[Piece.WHITE_KNIGHT]) + Long.bitCount(board[Piece.BLACK_KNIGHT])), 24));
+    }
+
     private int kingEval(int player, int other, long rookBitboard, long pawnBitboard, long otherPawnBitboard) {
         int eval = 0;
         int kingRank = this.playerKingRank[player];
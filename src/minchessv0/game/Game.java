@@ -1,7 +1,11 @@
 package minchessv0.game;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import minchessv0.board.Board;
 import minchessv0.eval.Eval;
@@ -9,11 +13,17 @@ import minchessv0.gen.Gen;
 import minchessv0.move.Move;
 import minchessv0.search.Search;
 import minchessv0.search.SearchParallel;
+import minchessv0.search.SearchTrace;
+import minchessv0.test.Bench;
 import minchessv0.test.EvalTest;
 import minchessv0.test.Perft;
 import minchessv0.test.SearchTest;
 import minchessv0.uci.CommandQueue;
 import minchessv0.uci.Engine;
+import minchessv0.util.TTable;
+import minchessv0.util.TTableFile;
+import minchessv0.util.TTableOffHeap;
+import minchessv0.util.TranspositionTable;
 import minchessv0.util.Value;
 
 public enum Game {
@@ -21,11 +31,18 @@ public enum Game {
 
     public void run() {
         //Perft.all();
-        //init();
-        //loop();
+        //uci();
         test();
     }
 
+    /**
+     * run the UCI loop, reading commands from standard input until quit
+     */
+    public void uci() {
+        init();
+        loop();
+    }
+
     public void sendCommand(String command) {
         this.commandQueue.add(command);
     }
@@ -49,8 +66,8 @@ public enum Game {
     }
 
     private long[] board;
-    private long[][] boardHistory;
-    private int boardCount;
+    private long[] keyHistory;
+    private int keyCount;
     private boolean quit;
     private List<String> commandParts;
     private CommandQueue commandQueue;
@@ -63,13 +80,31 @@ public enum Game {
     private int maxSearchTime;
     private int whiteTimeRemaining;
     private int blackTimeRemaining;
+    private TranspositionTable tTable;
+    private int threads;
+    private int multiPV;
+    private boolean ponder;
+    private long maxNodes;
+    private int mateMoves;
+    private List<String> searchMoves;
+    private ExecutorService searchPool;
+    private boolean offHeapHash;
+    private String hashFile;
+    private SearchTrace trace;
+
+    private static final int MAX_THREADS = 256;
+    private static final int MAX_MULTIPV = 64;
+    private static final int INITIAL_KEY_HISTORY_LENGTH = 512;
+    private static final int DEFAULT_MAX_DEPTH = 100;
+    private static final int DEFAULT_SEARCH_TIME = 5000;
+    private static final int DEFAULT_TIME_REMAINING = 120000;
 
     private Game() {}
 
     private void init() {
         this.board = new long[Board.MAX_BITBOARDS];
-        this.boardHistory = new long[Board.MAX_BITBOARDS][512];
-        this.boardCount = 0;
+        this.keyHistory = new long[INITIAL_KEY_HISTORY_LENGTH];
+        this.keyCount = 0;
         this.commandParts = new ArrayList<>();
         this.quit = false;
         this.commandQueue = new CommandQueue();
@@ -77,10 +112,21 @@ public enum Game {
         this.UCIThread = new Thread(this.engine);
         this.UCIThread.start();
         this.executeCommands = true;
-        this.maxDepth = 100;
-        this.maxSearchTime = 5000;
-        this.whiteTimeRemaining = 120000;
-        this.blackTimeRemaining = 120000;
+        this.maxDepth = DEFAULT_MAX_DEPTH;
+        this.maxSearchTime = DEFAULT_SEARCH_TIME;
+        this.whiteTimeRemaining = DEFAULT_TIME_REMAINING;
+        this.blackTimeRemaining = DEFAULT_TIME_REMAINING;
+        this.threads = 1;
+        this.multiPV = 1;
+        this.ponder = false;
+        this.maxNodes = 0L;
+        this.mateMoves = 0;
+        this.searchMoves = new ArrayList<>();
+        this.searchPool = createSearchPool(this.threads);
+        this.offHeapHash = false;
+        this.hashFile = "";
+        this.trace = null;
+        this.tTable = createTTable(TTable.DEFAULT_TABLE_SIZE_IN_MB);
         //Window.init();
     }
 
@@ -89,7 +135,7 @@ public enum Game {
         //this.board = Board.fromFen("8/3b4/6k1/5P2/4K3/8/8/8 b - - 0 1");
         //test();
         this.board = Board.startingPosition();
-        System.arraycopy(this.board, 0, this.boardHistory[boardCount ++], 0, this.board.length);
+        newKeyHistory();
         while(!quit) {
             if(this.commandQueue.hasNext() && this.executeCommands) {
                 String command = this.commandQueue.getNext();
@@ -97,6 +143,14 @@ public enum Game {
                     case "uci": {
                         System.out.println("id name MinChessV0");
                         System.out.println("id author Charles Clark");
+                        System.out.println("option name Hash type spin default " + TTable.DEFAULT_TABLE_SIZE_IN_MB + " min " + TTable.MIN_TABLE_SIZE_IN_MB + " max " + TTable.MAX_TABLE_SIZE_IN_MB);
+                        System.out.println("option name Threads type spin default 1 min 1 max " + MAX_THREADS);
+                        System.out.println("option name Clear Hash type button");
+                        System.out.println("option name MultiPV type spin default 1 min 1 max " + MAX_MULTIPV);
+                        System.out.println("option name Ponder type check default false");
+                        System.out.println("option name Hash Memory type combo default Heap var Heap var OffHeap");
+                        System.out.println("option name Hash File type string default <empty>");
+                        System.out.println("option name Trace File type string default <empty>");
                         System.out.println("uciok");
                         break;
                     }
@@ -108,11 +162,13 @@ public enum Game {
                     case "fen": {
                         String fen = this.commandQueue.getNext();
                         this.board = Board.fromFen(fen);
+                        newKeyHistory();
                         //Board.drawText(this.board);
                         break;
                     }
                     case "startpos": {
                         this.board = Board.startingPosition();
+                        newKeyHistory();
                         //Board.drawText(this.board);
                         break;
                     }
@@ -121,6 +177,7 @@ public enum Game {
                         int move = Move.stringToInt(this.board, moveString);
                         System.out.println(moveString + "->" + Move.string(move));
                         this.board = Board.makeMove(this.board, move);
+                        addKeyHistory();
                         //Board.drawText(this.board);
                         break;
                     }
@@ -129,7 +186,7 @@ public enum Game {
                         break;
                     }
                     case "infinite": {
-                        this.maxDepth = 100;
+                        this.maxDepth = DEFAULT_MAX_DEPTH;
                         break;
                     }
                     case "stop": {
@@ -139,30 +196,57 @@ public enum Game {
                         break;
                     }
                     case "search": {
-                        if(this.searchThread != null && this.searchThread.isAlive()) {
-                            this.searchTask.requestHalt();
-                            try {
-                                this.searchThread.join();
-                            } catch(InterruptedException e) {
-                                Thread.currentThread().interrupt();
-                            }
-                        }
-                        int thisSearchTime = this.maxSearchTime;
+                        stopSearch();
+                        long thisSearchTime = this.maxSearchTime;
+                        boolean clockTime = false;
                         switch((int) this.board[Board.STATUS] & Board.PLAYER_BIT) {
                             case 0: {
                                 if(this.whiteTimeRemaining < 60000) {
                                     thisSearchTime = this.whiteTimeRemaining / 15;
+                                    clockTime = true;
                                 }
                             }
                             case 1: {
                                 if(this.blackTimeRemaining < 60000) {
                                     thisSearchTime = this.blackTimeRemaining / 15;
+                                    clockTime = true;
                                 }
                             }
                         }
-                        this.searchTask = new SearchParallel(this.board, this.maxDepth, thisSearchTime);
+                        // a search to a number of nodes or for a mate has no time limit, so that
+                        // a node limited search on one thread is the same on any machine
+                        if(this.maxNodes > 0L || this.mateMoves > 0) {
+                            thisSearchTime = Long.MAX_VALUE;
+                            clockTime = false;
+                        }
+                        SearchParallel search = new SearchParallel(this.board, this.maxDepth, thisSearchTime, this.tTable, this.searchPool, this.threads);
+                        search.setGameHistory(this.keyHistory, this.keyCount);
+                        search.setMultiPV(this.multiPV);
+                        search.setTrace(this.trace);
+                        search.setPonder(this.ponder);
+                        search.setTimeManagement(clockTime);
+                        if(this.maxNodes > 0L) search.setMaxNodes(this.maxNodes);
+                        search.setMateMoves(this.mateMoves);
+                        if(!this.searchMoves.isEmpty()) {
+                            long[] searchMoves = new long[this.searchMoves.size()];
+                            for(int i = 0; i < searchMoves.length; i ++) {
+                                searchMoves[i] = Move.stringToInt(this.board, this.searchMoves.get(i));
+                            }
+                            search.setSearchMoves(searchMoves);
+                        }
+                        // the limits of a go command only apply to its own search
+                        this.ponder = false;
+                        this.maxDepth = DEFAULT_MAX_DEPTH;
+                        this.maxSearchTime = DEFAULT_SEARCH_TIME;
+                        this.whiteTimeRemaining = DEFAULT_TIME_REMAINING;
+                        this.blackTimeRemaining = DEFAULT_TIME_REMAINING;
+                        this.maxNodes = 0L;
+                        this.mateMoves = 0;
+                        this.searchMoves.clear();
+                        this.searchTask = search;
                         this.searchThread = new Thread((Runnable) this.searchTask);
                         this.searchThread.start();
+                        break;
                     }
                     case "makemove": {
                         String move = this.commandQueue.getNext();
@@ -182,7 +266,7 @@ public enum Game {
                                 if(m != Value.INVALID) {
                                     long[] boardAfterMove = Board.makeMove(board, m);
                                     System.arraycopy(boardAfterMove, 0, this.board, 0, boardAfterMove.length);
-                                    System.arraycopy(this.board, 0, this.boardHistory[boardCount ++], 0, this.board.length);
+                                    addKeyHistory();
                                     //Board.drawText(this.board);
                                 }
                             }
@@ -194,7 +278,32 @@ public enum Game {
                         break;
                     }
                     case "searchcomplete": {
-                        System.out.println("bestmove " + Move.string(this.searchTask.bestMove()));
+                        long ponderMove = this.searchTask.ponderMove();
+                        System.out.println("bestmove " + Move.string(this.searchTask.bestMove()) + (ponderMove != 0L ? " ponder " + Move.string(ponderMove) : ""));
+                        break;
+                    }
+                    case "nodes": {
+                        this.maxNodes = Long.parseLong(this.commandQueue.getNext());
+                        break;
+                    }
+                    case "mate": {
+                        this.mateMoves = Integer.parseInt(this.commandQueue.getNext());
+                        break;
+                    }
+                    case "searchmove": {
+                        this.searchMoves.add(this.commandQueue.getNext());
+                        break;
+                    }
+                    case "ponder": {
+                        // the next search ponders on the position, which ends with the
+                        // move the opponent is expected to play
+                        this.ponder = true;
+                        break;
+                    }
+                    case "ponderhit": {
+                        if(this.searchThread != null && this.searchThread.isAlive()) {
+                            this.searchTask.ponderHit();
+                        }
                         break;
                     }
                     case "movetime": {
@@ -205,7 +314,17 @@ public enum Game {
                         System.out.println("PV: " + this.searchTask.pv());
                         break;
                     }
+                    case "stats": {
+                        // the counters of the running search, or of the last one
+                        if(this.searchTask instanceof SearchParallel) {
+                            for(String line : ((SearchParallel) this.searchTask).stats().infoStrings()) {
+                                System.out.println(line);
+                            }
+                        }
+                        break;
+                    }
                     case "quit": {
+                        if(this.trace != null) this.trace.close();
                         this.quit = true;
                         break;
                     }
@@ -213,6 +332,8 @@ public enum Game {
                         // indicate that the next search begins searching on a new game
                         // so reset all game parameters so that they don't carry over
                         // from previous game
+                        stopSearch();
+                        this.tTable.clear(this.searchPool, this.threads);
                         break;
                     }
                     case "wtime": {
@@ -227,11 +348,179 @@ public enum Game {
                         Board.drawText(this.board);
                         break;
                     }
+                    case "hash": {
+                        // resizing discards the table so it can't happen under a running search
+                        int sizeInMB = spinValue("Hash", this.commandQueue.getNext(), TTable.MIN_TABLE_SIZE_IN_MB, TTable.MAX_TABLE_SIZE_IN_MB);
+                        if(sizeInMB < 0) break;
+                        stopSearch();
+                        try {
+                            this.tTable.resize(sizeInMB, this.searchPool, this.threads);
+                        } catch(OutOfMemoryError e) {
+                            System.out.println("info string not enough memory for a " + sizeInMB + " MB hash table, keeping " + this.tTable.sizeInMB() + " MB");
+                        }
+                        break;
+                    }
+                    case "threads": {
+                        int threads = spinValue("Threads", this.commandQueue.getNext(), 1, MAX_THREADS);
+                        if(threads < 0) break;
+                        stopSearch();
+                        this.threads = threads;
+                        this.searchPool.shutdown();
+                        this.searchPool = createSearchPool(this.threads);
+                        break;
+                    }
+                    case "clearhash": {
+                        stopSearch();
+                        this.tTable.clear(this.searchPool, this.threads);
+                        break;
+                    }
+                    case "hashmemory": {
+                        stopSearch();
+                        this.offHeapHash = this.commandQueue.getNext().equalsIgnoreCase("offheap");
+                        this.tTable = createTTable(this.tTable.sizeInMB());
+                        break;
+                    }
+                    case "hashfile": {
+                        stopSearch();
+                        String hashFile = this.commandQueue.getNext();
+                        this.hashFile = hashFile.equals("<empty>") ? "" : hashFile;
+                        if(this.offHeapHash) {
+                            this.tTable = createTTable(this.tTable.sizeInMB());
+                        }
+                        break;
+                    }
+                    case "tracefile": {
+                        // record the searches into a trace file, or stop recording
+                        stopSearch();
+                        String traceFile = this.commandQueue.getNext();
+                        if(this.trace != null) this.trace.close();
+                        this.trace = null;
+                        if(traceFile.isEmpty() || traceFile.equals("<empty>")) break;
+                        try {
+                            this.trace = new SearchTrace(traceFile, SearchTrace.DEFAULT_CAPACITY);
+                            System.out.println("info string tracing to " + traceFile);
+                        } catch(RuntimeException e) {
+                            System.out.println("info string " + e.getMessage() + ", not tracing");
+                        }
+                        break;
+                    }
+                    case "bench": {
+                        String depth = this.commandQueue.getNext();
+                        stopSearch();
+                        Bench.run(depth.isEmpty() ? Bench.DEFAULT_DEPTH : Integer.parseInt(depth));
+                        break;
+                    }
+                    case "savehash": {
+                        String fileName = this.commandQueue.getNext();
+                        stopSearch();
+                        try {
+                            TTableFile.save(this.tTable, fileName);
+                            System.out.println("info string hash saved to " + fileName);
+                        } catch(IOException e) {
+                            System.out.println("info string unable to save hash: " + e.getMessage());
+                        }
+                        break;
+                    }
+                    case "loadhash": {
+                        String fileName = this.commandQueue.getNext();
+                        stopSearch();
+                        try {
+                            TTableFile.load(this.tTable, fileName, this.searchPool, this.threads);
+                            System.out.println("info string hash loaded from " + fileName + " (" + this.tTable.sizeInMB() + " MB)");
+                        } catch(IOException e) {
+                            System.out.println("info string unable to load hash: " + e.getMessage());
+                        }
+                        break;
+                    }
+                    case "multipv": {
+                        int multiPV = spinValue("MultiPV", this.commandQueue.getNext(), 1, MAX_MULTIPV);
+                        if(multiPV > 0) this.multiPV = multiPV;
+                        break;
+                    }
                 }
             }
         }
     }
 
+    /**
+     * start the key history of a new game position with the key of the current
+     * board
+     */
+    private void newKeyHistory() {
+        this.keyCount = 0;
+        addKeyHistory();
+    }
+
+    /**
+     * add the key of the current board to the key history, the keys of the
+     * positions played since the last fen or startpos which the search checks
+     * for repetitions
+     */
+    private void addKeyHistory() {
+        if(this.keyCount == this.keyHistory.length) this.keyHistory = Arrays.copyOf(this.keyHistory, this.keyCount << 1);
+        this.keyHistory[this.keyCount ++] = this.board[Board.KEY];
+    }
+
+    /**
+     * halt the current search if there is one and wait for it to finish, so that
+     * shared search state such as the transposition table can be safely changed
+     */
+    private void stopSearch() {
+        if(this.searchThread != null && this.searchThread.isAlive()) {
+            this.searchTask.requestHalt();
+            try {
+                this.searchThread.join();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * the value of a spin option clamped to the option's range. A value which
+     * isn't a number is reported and ignored, so a bad setoption from the GUI
+     * doesn't end the game loop
+     *
+     * @return the clamped value, or -1 if the value isn't a number
+     */
+    private int spinValue(String name, String value, int min, int max) {
+        try {
+            return Math.max(min, Math.min(max, Integer.parseInt(value.trim())));
+        } catch(NumberFormatException e) {
+            System.out.println("info string ignoring " + name + " value \"" + value + "\"");
+            return -1;
+        }
+    }
+
+    /**
+     * create the pool of search threads. The pool runs the helper searches and
+     * also allocates and clears the transposition table, so the table's memory is
+     * first touched by the threads that search with it
+     */
+    private ExecutorService createSearchPool(int threads) {
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "search");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * create the transposition table selected by the Hash Memory and Hash File
+     * options, falling back to the heap table if the off heap memory can't be
+     * mapped
+     */
+    private TranspositionTable createTTable(int sizeInMB) {
+        if(this.offHeapHash) {
+            try {
+                return new TTableOffHeap(sizeInMB, this.hashFile, this.searchPool, this.threads);
+            } catch(RuntimeException | OutOfMemoryError e) {
+                System.out.println("info string " + e.getMessage() + ", using heap hash table");
+            }
+        }
+        return new TTable(sizeInMB, this.searchPool, this.threads);
+    }
+
     private void test() {
         SearchTest.test();
     }
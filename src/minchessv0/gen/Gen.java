@@ -29,6 +29,21 @@ public class Gen {
      *         element of the array is the length of the move list
      */
     public static long[] gen(long[] board, boolean legal, boolean tactical) {
+        long[] moves = gen(board, tactical, new long[MAX_MOVELIST_SIZE]);
+        return legal ? purgeIllegalMoves(board, moves, (int) board[Board.STATUS] & Board.PLAYER_BIT) : moves;
+    }
+
+    /**
+     * generate the pseudo-legal moves for a board into a moves array supplied by
+     * the caller rather than a new one, so that a search can reuse one moves array
+     * for each ply
+     *
+     * @param board    the board array
+     * @param tactical whether to generate only tactical moves
+     * @param moves    the array to write the moves into, of MAX_MOVELIST_SIZE
+     * @return moves
+     */
+    public static long[] gen(long[] board, boolean tactical, long[] moves) {
         /*
          * get the player to move from STATUS, the playerBit (for index into the
          * appropriate bitboard, and the otherBit (for index into the other player's
@@ -43,11 +58,6 @@ public class Gen {
          */
         long allOccupancy = board[playerBit] | board[otherBit];
         long otherOccupancy = board[otherBit];
-        /*
-         * create an array of ints to store the moves, the array's max size is set at
-         * 100, the last element of the array is the length of the move list
-         */
-        long[] moves = new long[MAX_MOVELIST_SIZE];
         /*
          * generate king moves, knight moves, pawn moves, and slider moves, and store
          * them in the moves array, moveListLength is updated to be the current number
@@ -69,7 +79,161 @@ public class Gen {
          * set the last element in the moves array to the length of the move list
          */
         moves[MOVELIST_SIZE] = moveListLength;
-        return legal ? purgeIllegalMoves(board, moves, player) : moves;
+        return moves;
+    }
+
+    /**
+     * generate the moves for a player in check. The king may move to any square
+     * not occupied by its own pieces, and if there is a single checker the other
+     * pieces may capture it or move to a square between it and the king, found
+     * from the between square masks in B. Like gen with legal set to false, the
+     * moves are pseudo-legal, moves of pinned pieces and king moves to attacked
+     * squares still have to be tested by making the move
+     *
+     * @param board the board array, the player to move must be in check
+     * @return an array of moves in the same format as gen
+     */
+    public static long[] genEvasions(long[] board) {
+        return genEvasions(board, new long[MAX_MOVELIST_SIZE]);
+    }
+
+    /**
+     * generate the evasions into a moves array supplied by the caller rather than a new one
+     */
+    public static long[] genEvasions(long[] board, long[] moves) {
+        int player = (int) board[Board.STATUS] & Board.PLAYER_BIT;
+        int playerBit = player << Board.PLAYER_SHIFT;
+        int otherBit = 8 ^ playerBit;
+        long allOccupancy = board[playerBit] | board[otherBit];
+        int moveListLength = 0;
+        int king = Piece.KING | playerBit;
+        int kingSquare = Long.numberOfTrailingZeros(board[king]);
+        long checkers = Board.squareAttackers(board, kingSquare, 1 ^ player);
+        moveListLength = addMoves(board, moves, moveListLength, kingSquare, king, B.BB[B.KING_ATTACKS][kingSquare] & ~board[playerBit]);
+        /*
+         * in double check only the king can move
+         */
+        if(checkers != 0L && (checkers & (checkers - 1)) == 0L) {
+            int checkerSquare = Long.numberOfTrailingZeros(checkers);
+            long targets = checkers | B.BB[B.BETWEEN][kingSquare | (checkerSquare << 6)];
+            int square;
+            long pieceBitboard;
+            int piece = Piece.KNIGHT | playerBit;
+            for(pieceBitboard = board[piece]; pieceBitboard != 0L; pieceBitboard &= pieceBitboard - 1) {
+                square = Long.numberOfTrailingZeros(pieceBitboard);
+                moveListLength = addMoves(board, moves, moveListLength, square, piece, B.BB[B.LEAP_ATTACKS][square] & targets);
+            }
+            piece = Piece.BISHOP | playerBit;
+            for(pieceBitboard = board[piece]; pieceBitboard != 0L; pieceBitboard &= pieceBitboard - 1) {
+                square = Long.numberOfTrailingZeros(pieceBitboard);
+                moveListLength = addMoves(board, moves, moveListLength, square, piece, Magic.bishopMoves(square, allOccupancy) & targets);
+            }
+            piece = Piece.ROOK | playerBit;
+            for(pieceBitboard = board[piece]; pieceBitboard != 0L; pieceBitboard &= pieceBitboard - 1) {
+                square = Long.numberOfTrailingZeros(pieceBitboard);
+                moveListLength = addMoves(board, moves, moveListLength, square, piece, Magic.rookMoves(square, allOccupancy) & targets);
+            }
+            piece = Piece.QUEEN | playerBit;
+            for(pieceBitboard = board[piece]; pieceBitboard != 0L; pieceBitboard &= pieceBitboard - 1) {
+                square = Long.numberOfTrailingZeros(pieceBitboard);
+                moveListLength = addMoves(board, moves, moveListLength, square, piece, Magic.queenMoves(square, allOccupancy) & targets);
+            }
+            /*
+             * pawns capture the checker, or push to a square between it and the king. A
+             * checking pawn which has just advanced two squares can also be captured en
+             * passant
+             */
+            long captureTargets = checkers;
+            int eSquare = Board.enPassantSquare(board);
+            if(eSquare != Value.INVALID && checkerSquare == eSquare + (player == Value.WHITE ? -8 : 8)) captureTargets |= 1L << eSquare;
+            piece = Piece.PAWN | playerBit;
+            long moveBitboard;
+            int targetSquare;
+            int targetRank;
+            for(pieceBitboard = board[piece]; pieceBitboard != 0L; pieceBitboard &= pieceBitboard - 1) {
+                square = Long.numberOfTrailingZeros(pieceBitboard);
+                moveBitboard = B.BB[B.PAWN_ATTACKS_PLAYER0 + player][square] & captureTargets;
+                if((B.BB[B.PAWN_ADVANCE_1_PLAYER0 + player][square] & ~allOccupancy) != 0L) {
+                    moveBitboard |= (B.BB[B.PAWN_ADVANCE_1_PLAYER0 + player][square] | B.BB[B.PAWN_ADVANCE_2_PLAYER0 + player][square]) & ~allOccupancy & targets;
+                }
+                for(; moveBitboard != 0L; moveBitboard &= moveBitboard - 1) {
+                    targetSquare = Long.numberOfTrailingZeros(moveBitboard);
+                    targetRank = targetSquare >>> 3;
+                    if(targetRank == 0 || targetRank == 7) {
+                        addPromotionMoves(board, moves, square, targetSquare, playerBit, moveListLength, piece);
+                        moveListLength += 4;
+                    } else addMove(board, moves, square, targetSquare, moveListLength ++, piece);
+                }
+            }
+        }
+        moves[MOVELIST_SIZE] = moveListLength;
+        return moves;
+    }
+
+    /**
+     * generate the quiet moves which give direct check, for the quiescence search.
+     * The squares each piece type checks the other king from are found by looking
+     * out from the king, so only moves to those squares are generated. Captures,
+     * promotions, castling and discovered checks are left out, captures and
+     * promotions are already searched by the quiescence search. The moves are
+     * pseudo-legal
+     *
+     * @param board the board array
+     * @return an array of moves in the same format as gen
+     */
+    public static long[] genQuietChecks(long[] board) {
+        return genQuietChecks(board, new long[MAX_MOVELIST_SIZE]);
+    }
+
+    /**
+     * generate the quiet checks into a moves array supplied by the caller rather than a new one
+     */
+    public static long[] genQuietChecks(long[] board, long[] moves) {
+        int player = (int) board[Board.STATUS] & Board.PLAYER_BIT;
+        int playerBit = player << Board.PLAYER_SHIFT;
+        int otherBit = 8 ^ playerBit;
+        long allOccupancy = board[playerBit] | board[otherBit];
+        long empty = ~allOccupancy;
+        int moveListLength = 0;
+        int otherKingSquare = Long.numberOfTrailingZeros(board[Piece.KING | otherBit]);
+        long knightChecks = B.BB[B.LEAP_ATTACKS][otherKingSquare] & empty;
+        long bishopChecks = Magic.bishopMoves(otherKingSquare, allOccupancy) & empty;
+        long rookChecks = Magic.rookMoves(otherKingSquare, allOccupancy) & empty;
+        int square;
+        long pieceBitboard;
+        int piece = Piece.KNIGHT | playerBit;
+        for(pieceBitboard = board[piece]; pieceBitboard != 0L; pieceBitboard &= pieceBitboard - 1) {
+            square = Long.numberOfTrailingZeros(pieceBitboard);
+            moveListLength = addMoves(board, moves, moveListLength, square, piece, B.BB[B.LEAP_ATTACKS][square] & knightChecks);
+        }
+        piece = Piece.BISHOP | playerBit;
+        for(pieceBitboard = board[piece]; pieceBitboard != 0L; pieceBitboard &= pieceBitboard - 1) {
+            square = Long.numberOfTrailingZeros(pieceBitboard);
+            moveListLength = addMoves(board, moves, moveListLength, square, piece, Magic.bishopMoves(square, allOccupancy) & bishopChecks);
+        }
+        piece = Piece.ROOK | playerBit;
+        for(pieceBitboard = board[piece]; pieceBitboard != 0L; pieceBitboard &= pieceBitboard - 1) {
+            square = Long.numberOfTrailingZeros(pieceBitboard);
+            moveListLength = addMoves(board, moves, moveListLength, square, piece, Magic.rookMoves(square, allOccupancy) & rookChecks);
+        }
+        piece = Piece.QUEEN | playerBit;
+        for(pieceBitboard = board[piece]; pieceBitboard != 0L; pieceBitboard &= pieceBitboard - 1) {
+            square = Long.numberOfTrailingZeros(pieceBitboard);
+            moveListLength = addMoves(board, moves, moveListLength, square, piece, Magic.queenMoves(square, allOccupancy) & (bishopChecks | rookChecks));
+        }
+        /*
+         * a pawn checks from the squares the other king would attack if it were a
+         * pawn of the other player, pushes to the last rank are promotions
+         */
+        long pawnChecks = B.BB[B.PAWN_ATTACKS_PLAYER0 + (1 ^ player)][otherKingSquare] & empty & ~0xff000000000000ffL;
+        piece = Piece.PAWN | playerBit;
+        for(pieceBitboard = board[piece]; pieceBitboard != 0L; pieceBitboard &= pieceBitboard - 1) {
+            square = Long.numberOfTrailingZeros(pieceBitboard);
+            if((B.BB[B.PAWN_ADVANCE_1_PLAYER0 + player][square] & empty) == 0L) continue;
+            moveListLength = addMoves(board, moves, moveListLength, square, piece, (B.BB[B.PAWN_ADVANCE_1_PLAYER0 + player][square] | B.BB[B.PAWN_ADVANCE_2_PLAYER0 + player][square]) & pawnChecks);
+        }
+        moves[MOVELIST_SIZE] = moveListLength;
+        return moves;
     }
 
     /**
@@ -77,6 +241,20 @@ public class Gen {
      */
     private Gen() {}
 
+    /**
+     * add a move to the moves array for each target square in a bitboard
+     *
+     * @param moveBitboard the target squares of the piece
+     * @return the number of moves in the moves array after the moves have been
+     *         added
+     */
+    private static int addMoves(long[] board, long[] moves, int moveListLength, int square, int piece, long moveBitboard) {
+        for(; moveBitboard != 0L; moveBitboard &= moveBitboard - 1) {
+            addMove(board, moves, square, Long.numberOfTrailingZeros(moveBitboard), moveListLength ++, piece);
+        }
+        return moveListLength;
+    }
+
     /**
      * Create a new movelist which contains only legal moves by iterating
      * over all pseudo-legal moves, making the move and checking whether
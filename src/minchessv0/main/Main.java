@@ -1,10 +1,24 @@
 package minchessv0.main;
 
 import minchessv0.game.Game;
+import minchessv0.search.SearchTraceReader;
+import minchessv0.test.Bench;
 
 public class Main {
     
     public static void main(String[] args) {
+        // bench [depth] runs the bench and exits, nonzero if the signature doesn't match
+        if(args.length > 0 && args[0].equals("bench")) {
+            boolean passed = args.length > 1 ? Bench.run(Integer.parseInt(args[1])) : Bench.run();
+            System.exit(passed ? 0 : 1);
+        }
+        // trace file [move [plies]] prints the root of a trace file, or the tree of a root move
+        if(args.length > 1 && args[0].equals("trace")) {
+            SearchTraceReader reader = new SearchTraceReader(args[1]);
+            if(args.length > 2) reader.printTree(args[2], args.length > 3 ? Integer.parseInt(args[3]) : 1);
+            else reader.printRoot();
+            return;
+        }
         Game.INSTANCE.run();
     }
 
@@ -0,0 +1,170 @@
+package minchessv0.search;
+
+import minchessv0.gen.Gen;
+import minchessv0.util.TTable;
+
+/**
+ * the moves of the root position with, for each, the score of its last search,
+ * whether that score is exact or a bound, and the nodes searched below it in the
+ * current iteration. Moves whose score is exact or a lower bound are ordered by
+ * score, the moves which failed low only have an upper bound, which with a fail
+ * hard search is the same for all of them, so they are ordered by the nodes it
+ * took to refute them, the moves hardest to refute being the likeliest to be
+ * best at the next depth
+ */
+public class RootMoves {
+
+    /**
+     * @param moveList a move list from Gen of the legal moves of the root
+     *                 position, with an estimated score for each in the top 32
+     *                 bits, taken as exact
+     */
+    public RootMoves(long[] moveList) {
+        this.size = (int) moveList[Gen.MOVELIST_SIZE];
+        this.moves = new long[this.size];
+        this.scores = new int[this.size];
+        this.bounds = new int[this.size];
+        this.nodes = new long[this.size];
+        for(int index = 0; index < this.size; index ++) {
+            this.moves[index] = moveList[index] & 0xffffffffL;
+            this.scores[index] = (int) (moveList[index] >> 32);
+            this.bounds[index] = TTable.EXACT;
+        }
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public long move(int index) {
+        return this.moves[index];
+    }
+
+    public int score(int index) {
+        return this.scores[index];
+    }
+
+    /**
+     * @return TTable.EXACT, TTable.ALPHA for an upper bound or TTable.BETA for a
+     *         lower bound
+     */
+    public int bound(int index) {
+        return this.bounds[index];
+    }
+
+    /**
+     * the nodes searched below a move in the current iteration
+     */
+    public long nodes(int index) {
+        return this.nodes[index];
+    }
+
+    /**
+     * the nodes searched below the moves from an index to the end in the current
+     * iteration
+     */
+    public long nodesFrom(int begin) {
+        long nodes = 0L;
+        for(int index = begin; index < this.size; index ++) {
+            nodes += this.nodes[index];
+        }
+        return nodes;
+    }
+
+    /**
+     * record the result of searching a move
+     *
+     * @param bound TTable.EXACT, TTable.ALPHA if the move failed low or
+     *              TTable.BETA if it failed high
+     * @param nodes the nodes searched below the move, added to its count
+     */
+    public void update(int index, int score, int bound, long nodes) {
+        this.scores[index] = score;
+        this.bounds[index] = bound;
+        this.nodes[index] += nodes;
+    }
+
+    /**
+     * clear the node counts at the start of an iteration
+     */
+    public void newIteration() {
+        for(int index = 0; index < this.size; index ++) {
+            this.nodes[index] = 0L;
+        }
+    }
+
+    /**
+     * @return the index of a move, or -1 if it isn't a root move
+     */
+    public int indexOf(long move) {
+        for(int index = 0; index < this.size; index ++) {
+            if(this.moves[index] == move) return index;
+        }
+        return -1;
+    }
+
+    /**
+     * move a move to an index, shifting the moves between back by one
+     *
+     * @param move  the move, nothing is moved if it is 0 or already before the
+     *              index
+     * @param index the index to move it to
+     */
+    public void moveTo(long move, int index) {
+        for(int moveIndex = index + 1; moveIndex < this.size; moveIndex ++) {
+            if(this.moves[moveIndex] != move) continue;
+            for(; moveIndex > index; moveIndex --) {
+                swap(moveIndex, moveIndex - 1);
+            }
+            break;
+        }
+    }
+
+    /**
+     * sort the moves from an index to the end, leaving the moves before it in
+     * place. An insertion sort, as there are few moves and it keeps the order of
+     * moves which compare equal
+     */
+    public void sort(int begin) {
+        for(int index = begin + 1; index < this.size; index ++) {
+            for(int moveIndex = index; moveIndex > begin && isBefore(moveIndex, moveIndex - 1); moveIndex --) {
+                swap(moveIndex, moveIndex - 1);
+            }
+        }
+    }
+
+    private int size;
+    private long[] moves;
+    private int[] scores;
+    private int[] bounds;
+    private long[] nodes;
+
+    /**
+     * whether the move at one index should be searched before the move at
+     * another. Moves with an exact score or a lower bound come before moves
+     * which failed low, ordered by score, and the moves which failed low are
+     * ordered by their nodes
+     */
+    private boolean isBefore(int index, int other) {
+        boolean failedLow = this.bounds[index] == TTable.ALPHA;
+        if(failedLow != (this.bounds[other] == TTable.ALPHA)) return !failedLow;
+        if(!failedLow) return this.scores[index] > this.scores[other];
+        return this.nodes[index] > this.nodes[other];
+    }
+
+    private void swap(int index, int other) {
+        long move = this.moves[index];
+        this.moves[index] = this.moves[other];
+        this.moves[other] = move;
+        int score = this.scores[index];
+        this.scores[index] = this.scores[other];
+        this.scores[other] = score;
+        int bound = this.bounds[index];
+        this.bounds[index] = this.bounds[other];
+        this.bounds[other] = bound;
+        long nodes = this.nodes[index];
+        this.nodes[index] = this.nodes[other];
+        this.nodes[other] = nodes;
+    }
+
+}
@@ -6,5 +6,7 @@ public interface Search {
     public long bestMove();
     public String pv();
     public long nodes();
+    public long ponderMove();
+    public void ponderHit();
 
 }
@@ -0,0 +1,100 @@
+package minchessv0.search;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * a JFR event for each search, lasting from the start of the search to its
+ * result, with the search's counters added up over its threads. Nothing is
+ * recorded unless a flight recording is running, so a production run can be
+ * profiled by starting one, for example with -XX:StartFlightRecording
+ */
+@Name("minchessv0.Search")
+@Label("Search")
+@Category({ "MinChessV0", "Search" })
+@Description("A search and its counters")
+class SearchEvent extends Event {
+
+    @Label("Depth")
+    int depth;
+
+    @Label("Best Move")
+    String bestMove;
+
+    @Label("Score")
+    int score;
+
+    @Label("Threads")
+    int threads;
+
+    @Label("Nodes")
+    long nodes;
+
+    @Label("Quiescence Nodes")
+    long quiescenceNodes;
+
+    @Label("TT Probes")
+    long ttProbes;
+
+    @Label("TT Hits")
+    long ttHits;
+
+    @Label("TT Cuts")
+    long ttCuts;
+
+    @Label("Null Move Searches")
+    long nullMoveSearches;
+
+    @Label("Null Move Cuts")
+    long nullMoveCuts;
+
+    @Label("LMR Searches")
+    long lmrSearches;
+
+    @Label("LMR Re-searches")
+    long lmrResearches;
+
+    @Label("Beta Cutoffs")
+    long betaCutoffs;
+
+    @Label("First Move Cutoffs")
+    long firstMoveCutoffs;
+
+    @Label("Eval Calls")
+    long evalCalls;
+
+    @Label("Gen Moves")
+    long genMoves;
+
+    @Label("Gen Evasions")
+    long genEvasions;
+
+    @Label("Gen Captures")
+    long genCaptures;
+
+    @Label("Gen Quiet Checks")
+    long genQuietChecks;
+
+    void setStats(SearchStats stats) {
+        this.nodes = stats.get(SearchStats.NODES);
+        this.quiescenceNodes = stats.get(SearchStats.QUIESCENCE_NODES);
+        this.ttProbes = stats.get(SearchStats.TT_PROBES);
+        this.ttHits = stats.get(SearchStats.TT_HITS);
+        this.ttCuts = stats.get(SearchStats.TT_CUTS);
+        this.nullMoveSearches = stats.get(SearchStats.NULL_MOVE_SEARCHES);
+        this.nullMoveCuts = stats.get(SearchStats.NULL_MOVE_CUTS);
+        this.lmrSearches = stats.get(SearchStats.LMR_SEARCHES);
+        this.lmrResearches = stats.get(SearchStats.LMR_RESEARCHES);
+        this.betaCutoffs = stats.get(SearchStats.BETA_CUTOFFS);
+        this.firstMoveCutoffs = stats.get(SearchStats.FIRST_MOVE_CUTOFFS);
+        this.evalCalls = stats.get(SearchStats.EVAL_CALLS);
+        this.genMoves = stats.get(SearchStats.GEN_MOVES);
+        this.genEvasions = stats.get(SearchStats.GEN_EVASIONS);
+        this.genCaptures = stats.get(SearchStats.GEN_CAPTURES);
+        this.genQuietChecks = stats.get(SearchStats.GEN_QUIET_CHECKS);
+    }
+
+}
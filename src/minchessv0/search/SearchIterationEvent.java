@@ -0,0 +1,34 @@
+package minchessv0.search;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * a JFR event for each completed iteration of the main search thread, lasting
+ * from the start of the iteration to its end
+ */
+@Name("minchessv0.SearchIteration")
+@Label("Search Iteration")
+@Category({ "MinChessV0", "Search" })
+@Description("An iteration of the main search thread")
+class SearchIterationEvent extends Event {
+
+    @Label("Depth")
+    int depth;
+
+    @Label("Best Move")
+    String bestMove;
+
+    @Label("Score")
+    int score;
+
+    @Label("Nodes")
+    long nodes;
+
+    @Label("Best Move Node Fraction")
+    double bestMoveNodeFraction;
+
+}
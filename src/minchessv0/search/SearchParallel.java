@@ -1,30 +1,73 @@
 package minchessv0.search;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
 import minchessv0.board.Board;
 import minchessv0.eval.Eval;
 import minchessv0.game.Game;
 import minchessv0.gen.Gen;
 import minchessv0.move.Move;
+import minchessv0.sort.ContinuationHistory;
+import minchessv0.sort.History;
 import minchessv0.sort.Sort;
 import minchessv0.util.Piece;
+import minchessv0.util.TTable;
+import minchessv0.util.TranspositionTable;
 
 public class SearchParallel implements Search, Runnable {
+
+    public static final int INTERNAL_ITERATIVE_NONE = 0;
+    public static final int INTERNAL_ITERATIVE_REDUCTION = 1;
+    public static final int INTERNAL_ITERATIVE_DEEPENING = 2;
     
     public SearchParallel(long[] board, int maxDepth, long maxSearchTime) {
+        this(board, maxDepth, maxSearchTime, new TTable(), null, 1);
+    }
+
+    public SearchParallel(long[] board, int maxDepth, long maxSearchTime, TranspositionTable tTable, ExecutorService pool, int threads) {
         this.board = new long[Board.MAX_BITBOARDS];
         System.arraycopy(board, 0, this.board, 0, Board.MAX_BITBOARDS);
-        this.rootMoveList = Gen.gen(this.board, true, false);
         this.maxDepth = maxDepth;
         this.maxSearchTime = maxSearchTime;
         this.searchRunning = false;
         this.searchHalted = false;
-        this.rootPV = new int[MAX_PV_LENGTH];
+        this.ponderRelease = new CountDownLatch(1);
+        setMultiPV(1);
         this.sendInfoDelay = 100000;
+        this.tTable = tTable;
+        this.pool = pool;
+        this.threads = threads;
+        this.helper = false;
+        this.helperIndex = 0;
+        this.uci = true;
+        this.futilityPruning = true;
+        this.internalIterative = INTERNAL_ITERATIVE_REDUCTION;
+        this.singularExtension = true;
+        this.probCut = true;
+        this.maxNodes = Long.MAX_VALUE;
+        this.timeManagement = false;
+        this.mateMoves = 0;
+        this.searchMoves = null;
+        this.trace = null;
+        this.history = new History();
+        this.stack = new SearchStack();
+        this.evaluator = new Eval();
+        this.seeBoard = new long[Board.MAX_BITBOARDS];
+        this.betaCutoffs = new long[History.MAX_PLY];
+        this.firstMoveCutoffs = new long[History.MAX_PLY];
+        this.probCutSearches = new long[History.MAX_PLY];
+        this.probCutPrunes = new long[History.MAX_PLY];
+        this.counters = new long[SearchStats.COUNTERS];
     }
 
     @Override
     public void run() {
+        if(!this.helper) this.tTable.newSearch();
         init();
+        startHelpers();
         this.searchRunning= true;
         while(this.searchRunning) {
             try {
@@ -39,6 +82,7 @@ public class SearchParallel implements Search, Runnable {
     public void requestHalt() {
         this.searchHalted = true;
         this.searchRunning = false;
+        this.ponderRelease.countDown();
     }
 
     @Override
@@ -48,33 +92,425 @@ public class SearchParallel implements Search, Runnable {
 
     @Override
     public String pv() {
+        return pv(0);
+    }
+
+    /**
+     * the PV of one of the lines of a MultiPV search, line 0 being the best
+     */
+    public String pv(int line) {
         String pv = "";
-        for(int i = 1; i <= this.rootPV[0]; i ++) {
-            pv += Move.string((long) this.rootPV[i]) + " ";
+        for(int i = 1; i <= this.linePVs[line][0]; i ++) {
+            pv += Move.string((long) this.linePVs[line][i]) + " ";
         }
         return pv;
     }
 
+    public int multiPV() {
+        return this.multiPV;
+    }
+
+    /**
+     * the first move of one of the lines of a MultiPV search
+     *
+     * @return the move, or 0 if the line hasn't been searched
+     */
+    public long bestMove(int line) {
+        return this.lineMoves[line];
+    }
+
+    /**
+     * the score of one of the lines of a MultiPV search
+     */
+    public int score(int line) {
+        return this.lineScores[line];
+    }
+
+    /**
+     * search the best multiPV root moves rather than just the best one. Each
+     * iteration searches the root moves once, the lines of the last iteration
+     * each with a window of their own and the other moves with a null window at
+     * the score of the worst line, so that only a move which beats it costs a
+     * full search. Set before the search is run
+     *
+     * @param multiPV the number of lines to search
+     */
+    public void setMultiPV(int multiPV) {
+        this.multiPV = multiPV;
+        this.lineMoves = new long[multiPV];
+        this.lineScores = new int[multiPV];
+        this.lineDepths = new int[multiPV];
+        this.linePVs = new int[multiPV][History.MAX_PLY + 1];
+    }
+
+    /**
+     * whether the search reports info lines and sends searchcomplete to the game
+     * when it finishes, turned off to run searches outside of the UCI loop
+     *
+     * @param uci true to report to the UCI loop
+     */
+    public void setUCI(boolean uci) {
+        this.uci = uci;
+    }
+
+    /**
+     * the percentage of beta cutoffs in the main search which were caused by the
+     * first legal move searched, summed over this search and its helpers. A
+     * measure of how well moves are ordered
+     */
+    public double firstMoveCutoffRate() {
+        long cutoffs = 0L;
+        long firstMoveCutoffs = 0L;
+        for(int depth = 1; depth < History.MAX_PLY; depth ++) {
+            cutoffs += betaCutoffs(depth);
+            firstMoveCutoffs += firstMoveCutoffs(depth);
+        }
+        return cutoffs == 0L ? 0.0 : firstMoveCutoffs * 100.0 / cutoffs;
+    }
+
+    /**
+     * the number of beta cutoffs in nodes searched to a remaining depth, summed
+     * over this search and its helpers
+     */
+    public long betaCutoffs(int depth) {
+        long cutoffs = this.betaCutoffs[depth];
+        if(this.helpers != null) {
+            for(SearchParallel helper : this.helpers) {
+                cutoffs += helper.betaCutoffs[depth];
+            }
+        }
+        return cutoffs;
+    }
+
+    /**
+     * the number of those beta cutoffs which were caused by the first legal move
+     */
+    public long firstMoveCutoffs(int depth) {
+        long cutoffs = this.firstMoveCutoffs[depth];
+        if(this.helpers != null) {
+            for(SearchParallel helper : this.helpers) {
+                cutoffs += helper.firstMoveCutoffs[depth];
+            }
+        }
+        return cutoffs;
+    }
+
+    /**
+     * turn reverse futility pruning, futility pruning and razoring on or off, used
+     * to measure what they are worth
+     */
+    public void setFutilityPruning(boolean futilityPruning) {
+        this.futilityPruning = futilityPruning;
+    }
+
+    /**
+     * choose what the search does at a node with no hash move, used to measure
+     * what internal iterative reduction and deepening are worth
+     *
+     * @param internalIterative INTERNAL_ITERATIVE_NONE, INTERNAL_ITERATIVE_REDUCTION
+     *                          or INTERNAL_ITERATIVE_DEEPENING
+     */
+    public void setInternalIterative(int internalIterative) {
+        this.internalIterative = internalIterative;
+    }
+
+    /**
+     * turn singular extensions and multi-cut pruning on or off, used to measure
+     * what they are worth
+     */
+    public void setSingularExtension(boolean singularExtension) {
+        this.singularExtension = singularExtension;
+    }
+
+    /**
+     * the number of singular extension searches, summed over this search and its
+     * helpers
+     */
+    public long singularSearches() {
+        long searches = this.singularSearches;
+        if(this.helpers != null) {
+            for(SearchParallel helper : this.helpers) {
+                searches += helper.singularSearches;
+            }
+        }
+        return searches;
+    }
+
+    /**
+     * the number of those searches which found the hash move singular and
+     * extended it
+     */
+    public long singularExtensions() {
+        long extensions = this.singularExtensions;
+        if(this.helpers != null) {
+            for(SearchParallel helper : this.helpers) {
+                extensions += helper.singularExtensions;
+            }
+        }
+        return extensions;
+    }
+
+    /**
+     * the number of those searches in which another move also beat beta, so the
+     * node was cut
+     */
+    public long multiCuts() {
+        long multiCuts = this.multiCuts;
+        if(this.helpers != null) {
+            for(SearchParallel helper : this.helpers) {
+                multiCuts += helper.multiCuts;
+            }
+        }
+        return multiCuts;
+    }
+
+    /**
+     * turn ProbCut on or off, used to measure what it is worth
+     */
+    public void setProbCut(boolean probCut) {
+        this.probCut = probCut;
+    }
+
+    /**
+     * the number of nodes at a remaining depth where ProbCut searched captures,
+     * summed over this search and its helpers
+     */
+    public long probCutSearches(int depth) {
+        long searches = this.probCutSearches[depth];
+        if(this.helpers != null) {
+            for(SearchParallel helper : this.helpers) {
+                searches += helper.probCutSearches[depth];
+            }
+        }
+        return searches;
+    }
+
+    /**
+     * the number of those nodes which ProbCut pruned
+     */
+    public long probCutPrunes(int depth) {
+        long prunes = this.probCutPrunes[depth];
+        if(this.helpers != null) {
+            for(SearchParallel helper : this.helpers) {
+                prunes += helper.probCutPrunes[depth];
+            }
+        }
+        return prunes;
+    }
+
+    /**
+     * stop the search once it has searched a number of nodes, as if the search
+     * time had run out. Only counted on this thread, so a fixed node search is
+     * only repeatable single threaded
+     *
+     * @param maxNodes the number of nodes to search
+     */
+    public void setMaxNodes(long maxNodes) {
+        this.maxNodes = maxNodes;
+    }
+
+    /**
+     * stop the search once it has found a mate in a number of moves or fewer, at
+     * the end of the iteration which found it
+     *
+     * @param mateMoves the number of moves, or 0 to search as normal
+     */
+    public void setMateMoves(int mateMoves) {
+        this.mateMoves = mateMoves;
+    }
+
+    /**
+     * only search these of the root moves. Moves which aren't legal in the root
+     * position are ignored, and if none of the moves are legal every root move is
+     * searched
+     *
+     * @param searchMoves the moves, matched on their start and target squares and
+     *                    promotion piece type
+     */
+    public void setSearchMoves(long[] searchMoves) {
+        this.searchMoves = searchMoves;
+    }
+
+    /**
+     * record the nodes of the main search thread in a trace, for offline
+     * analysis with SearchTraceReader. Set before the search is run
+     *
+     * @param trace the trace, or null not to record
+     */
+    public void setTrace(SearchTrace trace) {
+        this.trace = trace;
+    }
+
+    /**
+     * set the keys of the positions played in the game up to and including the
+     * root, so that the search scores repetitions of them as draws
+     *
+     * @param keys   the keys of the game's positions in the order they were played
+     * @param length the number of keys in the array
+     */
+    public void setGameHistory(long[] keys, int length) {
+        this.gameHistory = keys;
+        this.gameHistoryLength = length;
+        this.stack.setGameHistory(keys, length);
+    }
+
     @Override
     public long nodes() {
-        return this.nodesSearched;
+        long nodes = this.nodesSearched;
+        if(this.helpers != null) {
+            for(SearchParallel helper : this.helpers) {
+                nodes += helper.nodesSearched;
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * the counters of the search added up over this search and its helpers, while
+     * the search is running or after it has finished. Read without
+     * synchronisation, so counts taken while the helpers are running may be
+     * slightly behind
+     */
+    public SearchStats stats() {
+        SearchStats stats = new SearchStats();
+        stats.add(this.counters);
+        if(this.helpers != null) {
+            for(SearchParallel helper : this.helpers) {
+                stats.add(helper.counters);
+            }
+        }
+        stats.add(SearchStats.NODES, nodes());
+        for(int depth = 1; depth < History.MAX_PLY; depth ++) {
+            stats.add(SearchStats.BETA_CUTOFFS, betaCutoffs(depth));
+            stats.add(SearchStats.FIRST_MOVE_CUTOFFS, firstMoveCutoffs(depth));
+        }
+        return stats;
+    }
+
+    /**
+     * the second move of the PV, the reply the search expects to the best move.
+     * A transposition table cutoff at the first ply leaves the PV one move long,
+     * in which case the reply is the hash move of the position after the best
+     * move, if it is a legal move there
+     *
+     * @return the move, or 0 if there is no reply to ponder on
+     */
+    @Override
+    public long ponderMove() {
+        int[] pv = this.linePVs[0];
+        if(pv[0] >= 2) return (long) pv[2];
+        if(this.bestMove == 0L) return 0L;
+        long[] board = Board.makeMove(this.board, this.bestMove);
+        long hashMove = TTable.move(this.tTable.probe(board[Board.KEY]));
+        if(hashMove == 0L) return 0L;
+        long[] moveList = Gen.gen(board, true, false);
+        for(int i = 0; i < moveList[Gen.MOVELIST_SIZE]; i ++) {
+            if((moveList[i] & 0xffffffffL) == hashMove) return hashMove;
+        }
+        return 0L;
+    }
+
+    /**
+     * the move being pondered on was played. The search carries on with its tree
+     * and transposition table as a normal timed search, its time counted from
+     * now
+     */
+    @Override
+    public void ponderHit() {
+        this.timeLimitStartTime = System.currentTimeMillis();
+        this.pondering = false;
+        this.ponderRelease.countDown();
+        if(this.helpers != null) {
+            for(SearchParallel helper : this.helpers) {
+                helper.ponderHit();
+            }
+        }
+    }
+
+    /**
+     * search as a ponder search, which ignores its time limit and, if it reaches
+     * its maximum depth, doesn't finish until ponderHit is called or the search is
+     * halted. Set before the search is run
+     */
+    public void setPonder(boolean ponder) {
+        this.pondering = ponder;
+    }
+
+    /**
+     * let the search stop before its search time is up when the best move has
+     * taken most of the nodes of the last iteration, for a search time budgeted
+     * from the clock rather than a fixed move time
+     */
+    public void setTimeManagement(boolean timeManagement) {
+        this.timeManagement = timeManagement;
+    }
+
+    /**
+     * the share of the nodes of the last completed iteration that were searched
+     * below the best move
+     */
+    public double bestMoveNodeFraction() {
+        return this.bestMoveNodeFraction;
     }
 
     private static final int INFINITY = 999999;
-    private static final int MAX_PV_LENGTH = 20;
+    private static final int DRAW_SCORE = 0;
+    private static final int MATE_SCORE = 100000;
+    private static final int MATE_BOUND = MATE_SCORE - History.MAX_PLY;
+    private static final int ASPIRATION_WINDOW = 25;
+    private static final double NODE_FRACTION_TIME_SCALE = 1.2;
+    private static final int NULL_MOVE_MIN_DEPTH = 3;
+    private static final int NULL_MOVE_REDUCTION = 2;
+    private static final int NULL_MOVE_REDUCTION_DEPTH_DIVISOR = 4;
+    private static final int NULL_MOVE_VERIFICATION_DEPTH = 8;
+    private static final int FUTILITY_MAX_DEPTH = 3;
+    private static final int REVERSE_FUTILITY_MARGIN = 120;
+    private static final int[] FUTILITY_MARGIN = { 0, 150, 300, 500 };
+    private static final int[] RAZOR_MARGIN = { 0, 300, 500, 700 };
+    private static final int INTERNAL_ITERATIVE_MIN_DEPTH = 4;
+    private static final int INTERNAL_ITERATIVE_DEEPENING_REDUCTION = 2;
+    private static final int PROBCUT_MIN_DEPTH = 5;
+    private static final int PROBCUT_REDUCTION = 4;
+    private static final int PROBCUT_MARGIN = 200;
+    private static final int SINGULAR_MIN_DEPTH = 6;
+    private static final int SINGULAR_TABLE_DEPTH_MARGIN = 3;
+    private static final int SINGULAR_MARGIN = 3;
+    private static final int LMR_MIN_DEPTH = 3;
+    private static final int LMR_MIN_MOVES = 3;
+    private static final int LMR_HISTORY_DIVISOR = 4096;
+    private static final int[][] LMR_REDUCTION = new int[64][Gen.MAX_MOVELIST_SIZE];
+
+    static {
+        for(int depth = 1; depth < LMR_REDUCTION.length; depth ++) {
+            for(int moveNumber = 1; moveNumber < LMR_REDUCTION[depth].length; moveNumber ++) {
+                LMR_REDUCTION[depth][moveNumber] = (int) (0.75 + Math.log(depth) * Math.log(moveNumber) / 2.25);
+            }
+        }
+    }
 
     private long[] board;
-    private long[] rootMoveList;
-    private int rootMoveListLength;
+    private RootMoves rootMoves;
     private int maxDepth;
     private long maxSearchTime;
     private long bestMove;
     private long startTime;
+    private volatile long timeLimitStartTime;
+    private volatile boolean pondering;
+    private CountDownLatch ponderRelease;
+    private boolean timeManagement;
+    private int mateMoves;
+    private long[] searchMoves;
+    private SearchTrace trace;
+    private double bestMoveNodeFraction;
     private volatile boolean searchRunning;
-    private boolean searchHalted;
+    private volatile boolean searchHalted;
     private boolean timeReached;
     private long nodesSearched;
-    private int[] rootPV;
+    private int multiPV;
+    private long[] lineMoves;
+    private int[] lineScores;
+    private int[] lineDepths;
+    private int[][] linePVs;
     private int sendInfoDelay;
     private int currentSearchDepth;
     private long infoTimeElapsed;
@@ -82,140 +518,908 @@ public class SearchParallel implements Search, Runnable {
     private int bestScoreFoundAtDepth;
     private long currentDepthNodes;
     private long nextTimeToSendInfo;
+    private TranspositionTable tTable;
+    private ExecutorService pool;
+    private int threads;
+    private boolean helper;
+    private int helperIndex;
+    private boolean uci;
+    private boolean futilityPruning;
+    private int internalIterative;
+    private boolean singularExtension;
+    private long singularSearches;
+    private long singularExtensions;
+    private long multiCuts;
+    private boolean probCut;
+    private long[] probCutSearches;
+    private long[] probCutPrunes;
+    private long maxNodes;
+    private SearchParallel[] helpers;
+    private Future<?>[] helperTasks;
+    private History history;
+    private SearchStack stack;
+    private Eval evaluator;
+    private long[] seeBoard;
+    private long[] gameHistory;
+    private int gameHistoryLength;
+    private long[] betaCutoffs;
+    private long[] firstMoveCutoffs;
+    private long[] counters;
 
     private void init() {
-        this.rootMoveList = Gen.gen(this.board, true, false);
-        this.rootMoveListLength = (int) this.rootMoveList[Gen.MOVELIST_SIZE];
+        long[] rootMoveList = Gen.gen(this.board, true, false);
+        if(this.searchMoves != null) keepSearchMoves(rootMoveList);
+        int rootMoveListLength = (int) rootMoveList[Gen.MOVELIST_SIZE];
+        this.stack.setKey(0, this.board[Board.KEY]);
         long[] boardAfterMove;
         long move;
-        for(int moveIndex = 0; moveIndex < this.rootMoveListLength; moveIndex ++) {
-            move = this.rootMoveList[moveIndex];
+        for(int moveIndex = 0; moveIndex < rootMoveListLength; moveIndex ++) {
+            move = rootMoveList[moveIndex];
             boardAfterMove = Board.makeMove(this.board, move);
-            this.rootMoveList[moveIndex] = (move & 0xffffffffL) | ((long) -new Eval(boardAfterMove).eval() << 32);
+            rootMoveList[moveIndex] = (move & 0xffffffffL) | ((long) -evaluate(boardAfterMove) << 32);
         }
+        this.rootMoves = new RootMoves(rootMoveList);
+        this.bestMoveNodeFraction = 0.0;
     }
 
     private void doSearch() throws InterruptedException {
-        this.searchHalted = false;
         this.timeReached = false;
         this.bestMove = 0L;
+        for(int line = 0; line < this.multiPV; line ++) {
+            this.lineMoves[line] = 0L;
+            this.linePVs[line][0] = 0;
+        }
         this.startTime = System.currentTimeMillis();
+        this.timeLimitStartTime = this.startTime;
         this.nextTimeToSendInfo = this.startTime + this.sendInfoDelay;
         this.currentBestScore = -INFINITY;
         this.bestScoreFoundAtDepth = 0;
         this.infoTimeElapsed = this.startTime;
-        long[] boardAfterMove;
-        long move;
-        int eval;
         int bestEval;
-        int[] tempPV = new int[MAX_PV_LENGTH];
-        int moveEval;
-        for(int depth = 2; depth <= this.maxDepth; depth += (this.maxDepth - depth == 1) ? 1 : 2) {
+        int alpha;
+        int beta;
+        int window;
+        SearchEvent searchEvent = new SearchEvent();
+        searchEvent.begin();
+        SearchIterationEvent iterationEvent;
+        /*
+         * helper threads share the transposition table with the main thread, odd
+         * numbered helpers start one ply deeper so that the threads don't all search
+         * the same depths at the same time
+         */
+        for(int depth = 2 + (this.helperIndex & 1); depth <= this.maxDepth; depth += (this.maxDepth - depth == 1) ? 1 : 2) {
             this.currentSearchDepth = depth;
             this.currentDepthNodes = this.nodesSearched;
-            if(this.currentBestScore > (-INFINITY / 2)) sendInfo();
-            bestEval = -INFINITY;
-            Sort.sort(this.rootMoveList);
-            for(int moveIndex = 0; moveIndex < this.rootMoveListLength; moveIndex ++) {
-                move = this.rootMoveList[moveIndex];
-                moveEval = (int) (move >> 32);
-                boardAfterMove = Board.makeMove(this.board, move);
-                tempPV[0] = 0;
-                eval = -search(boardAfterMove, depth, -INFINITY, INFINITY, tempPV);
-                if(eval > moveEval) this.rootMoveList[moveIndex] = (move & 0xffffffffL) | ((long) eval << 32);
-                if(eval > bestEval) {
-                    this.bestMove = move;
-                    bestEval = eval;
-                    this.rootPV[0] = tempPV[0] + 1;
-                    this.rootPV[1] = (int) move;
-                    System.arraycopy(tempPV, 1, this.rootPV, 2, tempPV[0]);
-                    this.currentBestScore = bestEval;
-                    this.bestScoreFoundAtDepth = depth;
-                    sendInfo();
+            iterationEvent = this.helper ? null : new SearchIterationEvent();
+            if(iterationEvent != null) iterationEvent.begin();
+            if(!this.helper && this.uci && this.currentBestScore > (-INFINITY / 2)) sendInfo();
+            /*
+             * order the root moves by the results of the last iteration, then count
+             * the nodes of this one from zero
+             */
+            this.rootMoves.sort(0);
+            this.rootMoves.newIteration();
+            if(this.multiPV > 1) {
+                searchLines(depth, Math.min(this.multiPV, this.rootMoves.size()));
+            } else {
+                /*
+                 * once there is a score from a previous iteration, search with an
+                 * aspiration window around it. If the best score falls outside the
+                 * window, widen the window on that side and search again
+                 */
+                window = ASPIRATION_WINDOW;
+                alpha = -INFINITY;
+                beta = INFINITY;
+                if(this.lineMoves[0] != 0L) {
+                    alpha = Math.max(this.lineScores[0] - window, -INFINITY);
+                    beta = Math.min(this.lineScores[0] + window, INFINITY);
                 }
-                if(this.searchHalted || this.timeReached) break;
+                while(true) {
+                    bestEval = searchRoot(depth, alpha, beta);
+                    if(this.searchHalted || this.timeReached) break;
+                    if(bestEval <= alpha && alpha > -INFINITY) {
+                        alpha = Math.max(alpha - window, -INFINITY);
+                    } else if(bestEval >= beta && beta < INFINITY) {
+                        beta = Math.min(beta + window, INFINITY);
+                    } else {
+                        break;
+                    }
+                    window += window >>> 1;
+                }
+                if(!(this.searchHalted || this.timeReached)) this.rootMoves.moveTo(this.lineMoves[0], 0);
             }
             if(this.searchHalted || this.timeReached) break;
+            /*
+             * time management, the larger the share of the iteration's nodes spent
+             * on the best move, the less likely another move is to replace it, so
+             * the sooner the search stops. Another iteration isn't started once the
+             * time used passes the share of the search time left by the best move's
+             * node fraction
+             */
+            long iterationNodes = this.rootMoves.nodesFrom(0);
+            int bestMoveIndex = this.rootMoves.indexOf(this.bestMove);
+            this.bestMoveNodeFraction = iterationNodes == 0L || bestMoveIndex < 0 ? 0.0 : (double) this.rootMoves.nodes(bestMoveIndex) / iterationNodes;
+            if(iterationEvent != null) commitIterationEvent(iterationEvent, depth, iterationNodes);
+            if(this.mateMoves > 0 && this.currentBestScore >= MATE_SCORE - (this.mateMoves * 2 - 1)) break;
+            if(this.timeManagement && !this.pondering && System.currentTimeMillis() - this.timeLimitStartTime >= this.maxSearchTime * Math.min(1.0, NODE_FRACTION_TIME_SCALE - this.bestMoveNodeFraction)) break;
+        }
+        /*
+         * if the search was halted before any root move was searched, fall back to
+         * the first root move so that there is always a move to play
+         */
+        if(this.bestMove == 0L && this.rootMoves.size() > 0) {
+            this.bestMove = this.rootMoves.move(0);
         }
-        sendInfo();
         this.searchRunning = false;
+        if(this.helper) return;
+        /*
+         * a ponder search which has reached its maximum depth holds its result
+         * until the pondered move is played or the search is stopped, either of
+         * which releases it
+         */
+        if(this.pondering && !this.searchHalted) this.ponderRelease.await();
+        stopHelpers();
+        commitSearchEvent(searchEvent);
+        if(!this.uci) return;
+        sendInfo();
         Game.INSTANCE.sendCommand("searchcomplete");
     }
 
-    private int search(long[] board, int depth, int alpha, int beta, int[] pv) {
+    private void commitIterationEvent(SearchIterationEvent event, int depth, long nodes) {
+        if(!event.shouldCommit()) return;
+        event.depth = depth;
+        event.bestMove = Move.string(this.bestMove);
+        event.score = this.currentBestScore;
+        event.nodes = nodes;
+        event.bestMoveNodeFraction = this.bestMoveNodeFraction;
+        event.commit();
+    }
+
+    private void commitSearchEvent(SearchEvent event) {
+        if(!event.shouldCommit()) return;
+        event.depth = this.bestScoreFoundAtDepth;
+        event.bestMove = Move.string(this.bestMove);
+        event.score = this.currentBestScore;
+        event.threads = this.helpers == null ? 1 : this.helpers.length + 1;
+        event.setStats(stats());
+        event.commit();
+    }
+
+    /**
+     * search the root moves to a depth inside the window alpha to beta. The first
+     * move is searched with the full window and the rest with a null window
+     * around the best score so far, re-searching with the full window if a move
+     * turns out to be better. The best move and PV are only updated by moves
+     * which score inside the window. Each move's score, whether it is exact or a
+     * bound, and the nodes searched below it are recorded in the root moves
+     *
+     * @return the best score, at most alpha if every move failed low or at least
+     *         beta if a move failed high
+     */
+    private int searchRoot(int depth, int alpha, int beta) {
+        long[] boardAfterMove;
+        long move;
+        int eval;
+        long moveNodes;
+        int bestEval = -INFINITY;
+        int rootAlpha = alpha;
+        this.rootMoves.sort(0);
+        /*
+         * the sort may not leave the best move from the last search first, as its
+         * score may have been passed by moves whose searches failed high. Move it
+         * to the front so that it is searched first with the full window
+         */
+        this.rootMoves.moveTo(this.lineMoves[0], 0);
+        for(int moveIndex = 0; moveIndex < this.rootMoves.size(); moveIndex ++) {
+            move = this.rootMoves.move(moveIndex);
+            moveNodes = this.nodesSearched;
+            boardAfterMove = Board.makeMove(this.board, move, this.stack.board(1));
+            this.stack.setMove(0, move);
+            if(moveIndex == 0) {
+                eval = -search(boardAfterMove, depth, 1, -beta, -alpha, true);
+            } else {
+                eval = -search(boardAfterMove, depth, 1, -alpha - 1, -alpha, true);
+                if(eval > alpha && eval < beta && !(this.searchHalted || this.timeReached)) {
+                    eval = -search(boardAfterMove, depth, 1, -beta, -alpha, true);
+                }
+            }
+            if(this.searchHalted || this.timeReached) break;
+            this.rootMoves.update(moveIndex, eval, eval <= alpha ? TTable.ALPHA : eval >= beta ? TTable.BETA : TTable.EXACT, this.nodesSearched - moveNodes);
+            if(eval > bestEval) {
+                bestEval = eval;
+                if(eval > alpha) {
+                    alpha = eval;
+                    this.lineMoves[0] = move & 0xffffffffL;
+                    this.lineScores[0] = eval;
+                    this.lineDepths[0] = depth;
+                    updateLinePV(0, move);
+                    this.bestMove = move & 0xffffffffL;
+                    this.currentBestScore = eval;
+                    this.bestScoreFoundAtDepth = depth;
+                    if(!this.helper && this.uci) sendInfo();
+                }
+                if(eval >= beta) break;
+            }
+        }
+        if(this.trace != null && !(this.searchHalted || this.timeReached)) {
+            this.trace.record(this.board[Board.KEY], 0L, this.lineMoves[0], depth, 0, rootAlpha, beta, bestEval);
+        }
+        return bestEval;
+    }
+
+    /**
+     * search the root moves for the best lines in one pass to a depth. The lines
+     * of the last iteration, put at the front of the root moves, are searched
+     * first, each with an aspiration window around its last score. Once there
+     * are enough lines, each other move is searched with a null window at the
+     * score of the worst line and, only if it beats it, again above it to find
+     * its score, taking the worst line's place. The lines are kept best first. If
+     * the search is halted, the lines it reached are in order and the lines of
+     * the last iteration it didn't reach are left after them
+     *
+     * @param lines the number of lines to search, at most the number of root
+     *              moves
+     */
+    private void searchLines(int depth, int lines) {
+        long[] boardAfterMove;
+        long move;
+        int eval;
+        int alpha;
+        int beta;
+        int window;
+        long moveNodes;
+        int found = 0;
+        boolean lastIteration = this.lineMoves[0] != 0L;
+        for(int line = 0; line < lines; line ++) {
+            this.rootMoves.moveTo(this.lineMoves[line], line);
+        }
+        for(int moveIndex = 0; moveIndex < this.rootMoves.size(); moveIndex ++) {
+            move = this.rootMoves.move(moveIndex);
+            moveNodes = this.nodesSearched;
+            boardAfterMove = Board.makeMove(this.board, move, this.stack.board(1));
+            this.stack.setMove(0, move);
+            if(found < lines) {
+                window = ASPIRATION_WINDOW;
+                alpha = -INFINITY;
+                beta = INFINITY;
+                if(lastIteration && this.rootMoves.bound(moveIndex) == TTable.EXACT) {
+                    alpha = Math.max(this.rootMoves.score(moveIndex) - window, -INFINITY);
+                    beta = Math.min(this.rootMoves.score(moveIndex) + window, INFINITY);
+                }
+                while(true) {
+                    eval = -search(boardAfterMove, depth, 1, -beta, -alpha, true);
+                    if(this.searchHalted || this.timeReached) break;
+                    if(eval <= alpha && alpha > -INFINITY) {
+                        alpha = Math.max(alpha - window, -INFINITY);
+                    } else if(eval >= beta && beta < INFINITY) {
+                        beta = Math.min(beta + window, INFINITY);
+                    } else {
+                        break;
+                    }
+                    window += window >>> 1;
+                }
+                alpha = -INFINITY;
+            } else {
+                alpha = this.lineScores[lines - 1];
+                eval = -search(boardAfterMove, depth, 1, -alpha - 1, -alpha, true);
+                if(eval > alpha && !(this.searchHalted || this.timeReached)) {
+                    eval = -search(boardAfterMove, depth, 1, -INFINITY, -alpha, true);
+                }
+            }
+            if(this.searchHalted || this.timeReached) break;
+            this.rootMoves.update(moveIndex, eval, eval <= alpha ? TTable.ALPHA : TTable.EXACT, this.nodesSearched - moveNodes);
+            if(eval <= alpha) continue;
+            if(found < lines) found ++;
+            insertLine(found - 1, move, eval, depth);
+        }
+        if(found == 0) return;
+        for(int line = 0; line < found; line ++) {
+            this.rootMoves.moveTo(this.lineMoves[line], line);
+        }
+        this.bestMove = this.lineMoves[0];
+        this.currentBestScore = this.lineScores[0];
+        this.bestScoreFoundAtDepth = this.lineDepths[0];
+        if(this.trace != null && !(this.searchHalted || this.timeReached)) {
+            this.trace.record(this.board[Board.KEY], 0L, this.bestMove, depth, 0, -INFINITY, INFINITY, this.currentBestScore);
+        }
+    }
+
+    /**
+     * search the position at a ply, recording the node in the trace if there is
+     * one once it has been searched
+     */
+    private int search(long[] board, int depth, int ply, int alpha, int beta, boolean nullMoveAllowed) {
+        if(this.trace == null) return searchNode(board, depth, ply, alpha, beta, nullMoveAllowed);
+        int eval = searchNode(board, depth, ply, alpha, beta, nullMoveAllowed);
+        int[] pv = this.stack.pv(ply);
+        this.trace.record(board[Board.KEY], this.stack.previousMove(ply), pv[0] > 0 ? pv[1] : 0L, depth, ply, alpha, beta, eval);
+        return eval;
+    }
+
+    /**
+     * search the position at a ply, its board the board array of the ply in the
+     * search stack so that moves from it are made into the next ply's board array
+     * and nothing is allocated
+     */
+    private int searchNode(long[] board, int depth, int ply, int alpha, int beta, boolean nullMoveAllowed) {
+        this.stack.clearPV(ply);
         if(this.searchHalted || this.timeReached) return alpha;
-        if(this.nextTimeToSendInfo < System.currentTimeMillis()) {
+        if(!this.helper && this.uci && this.nextTimeToSendInfo < System.currentTimeMillis()) {
             this.nextTimeToSendInfo = System.currentTimeMillis() + this.sendInfoDelay;
             sendInfo();
         }
-        if(depth < 1) return quiesce(board, alpha, beta);
+        /*
+         * a repeated position, or one with no capture or pawn move for fifty moves
+         * unless it is checkmate, is a draw whatever is searched below it
+         */
+        this.stack.setKey(ply, board[Board.KEY]);
+        int halfMoveClock = Board.halfMoveClock(board);
+        if(this.stack.isRepetition(ply, halfMoveClock) || (halfMoveClock >= SearchStack.MAX_REVERSIBLE_PLIES && !isCheckmate(board, ply))) {
+            return alpha >= DRAW_SCORE ? alpha : beta <= DRAW_SCORE ? beta : DRAW_SCORE;
+        }
+        if(depth < 1 || ply >= History.MAX_PLY - 1) return quiesce(board, ply, alpha, beta, true);
+        /*
+         * mate distance pruning, no line from here can score better than mating on
+         * the next ply or worse than being mated now, so once a shorter mate has
+         * been found elsewhere the node can't change the result
+         */
+        if(MATE_SCORE - ply - 1 <= alpha) return alpha;
+        if(-MATE_SCORE + ply >= beta) return beta;
         this.nodesSearched ++;
+        int eval;
+        long key = board[Board.KEY];
+        /*
+         * the singular extension search of a node leaves out the hash move, so it
+         * neither uses nor stores transposition table entries for the node
+         */
+        long excludedMove = this.stack.excludedMove(ply);
+        long hashEntry = excludedMove == 0L ? this.tTable.probe(key) : 0L;
+        if(excludedMove == 0L) this.counters[SearchStats.TT_PROBES] ++;
+        long hashMove = 0L;
+        int hashEval = valueFromTable(TTable.eval(hashEntry), ply);
+        if(hashEntry != 0L) {
+            this.counters[SearchStats.TT_HITS] ++;
+            hashMove = TTable.move(hashEntry);
+            if(TTable.depth(hashEntry) >= depth) {
+                switch(TTable.type(hashEntry)) {
+                    case TTable.EXACT: {
+                        this.counters[SearchStats.TT_CUTS] ++;
+                        return hashEval <= alpha ? alpha : hashEval >= beta ? beta : hashEval;
+                    }
+                    case TTable.ALPHA: {
+                        if(hashEval > alpha) break;
+                        this.counters[SearchStats.TT_CUTS] ++;
+                        return alpha;
+                    }
+                    case TTable.BETA: {
+                        if(hashEval < beta) break;
+                        this.counters[SearchStats.TT_CUTS] ++;
+                        return beta;
+                    }
+                }
+            }
+        }
         int player = (int) board[Board.STATUS] & Board.PLAYER_BIT;
-        long[] localMoveList = Gen.gen(board, false, false);
+        boolean inCheck = Board.isPlayerInCheck(board, player);
+        boolean pvNode = beta - alpha > 1;
+        int staticEval = inCheck || pvNode ? -INFINITY : evaluate(board);
+        /*
+         * near the leaves, a non-PV node whose static eval is far enough above beta
+         * is cut without searching (reverse futility), and one whose static eval is
+         * far enough below alpha is resolved by a quiescence search (razoring).
+         * Neither is tried in check or when the window is near a mate score
+         */
+        if(this.futilityPruning && !inCheck && !pvNode && depth <= FUTILITY_MAX_DEPTH && Math.abs(beta) < MATE_BOUND) {
+            if(staticEval - REVERSE_FUTILITY_MARGIN * depth >= beta) return beta;
+            if(staticEval + RAZOR_MARGIN[depth] < alpha) {
+                eval = quiesce(board, ply, alpha, alpha + 1, true);
+                if(eval <= alpha) return alpha;
+            }
+        }
+        if(nullMoveAllowed && !inCheck && beta < MATE_BOUND && nullMovePrune(board, depth, ply, alpha, beta, staticEval, player)) {
+            this.counters[SearchStats.NULL_MOVE_CUTS] ++;
+            if(!(this.searchHalted || this.timeReached)) this.tTable.save(key, valueToTable(beta, ply), depth, TTable.BETA, hashMove);
+            return beta;
+        }
+        /*
+         * ProbCut, if a good capture searched to a reduced depth beats beta by a
+         * margin, a full depth search would very probably beat beta as well. Not
+         * tried if the transposition table already has a score from a search not
+         * much shallower which is below the raised beta
+         */
+        if(this.probCut && !pvNode && !inCheck && excludedMove == 0L && depth >= PROBCUT_MIN_DEPTH && Math.abs(beta) < MATE_BOUND
+                && !(hashEntry != 0L && TTable.depth(hashEntry) > depth - PROBCUT_REDUCTION && hashEval < beta + PROBCUT_MARGIN)
+                && probCutPrune(board, depth, ply, beta, staticEval, player)) {
+            if(!(this.searchHalted || this.timeReached)) this.tTable.save(key, valueToTable(beta, ply), depth - PROBCUT_REDUCTION + 1, TTable.BETA, hashMove);
+            return beta;
+        }
+        /*
+         * without a hash move the moves are ordered poorly. Either reduce the depth
+         * of the node, as a node the transposition table knows nothing about is
+         * unlikely to be important and the shallower search will leave a hash move
+         * for the next iteration (internal iterative reduction), or search the node
+         * to a reduced depth first to find a move to search first (internal
+         * iterative deepening)
+         */
+        if(hashMove == 0L && excludedMove == 0L && depth >= INTERNAL_ITERATIVE_MIN_DEPTH) {
+            if(this.internalIterative == INTERNAL_ITERATIVE_REDUCTION) {
+                depth --;
+            } else if(this.internalIterative == INTERNAL_ITERATIVE_DEEPENING) {
+                search(board, depth - INTERNAL_ITERATIVE_DEEPENING_REDUCTION, ply, alpha, beta, nullMoveAllowed);
+                if(this.searchHalted || this.timeReached) return alpha;
+                this.stack.clearPV(ply);
+                hashMove = TTable.move(this.tTable.probe(key));
+            }
+        }
+        /*
+         * singular extension, if the hash move is a lower bound from a search not
+         * much shallower than this one, search the other moves to half the depth
+         * with a null window a margin below its score. If they all fail low the
+         * hash move is much better than the alternatives and it is extended by a
+         * ply. If one fails high and the margin is still above beta, more than one
+         * move beats beta and the node is cut (multi-cut)
+         */
+        boolean singular = false;
+        if(this.singularExtension && hashMove != 0L && depth >= SINGULAR_MIN_DEPTH && (TTable.type(hashEntry) == TTable.BETA || TTable.type(hashEntry) == TTable.EXACT)
+                && TTable.depth(hashEntry) >= depth - SINGULAR_TABLE_DEPTH_MARGIN && Math.abs(hashEval) < MATE_BOUND) {
+            int singularBeta = hashEval - SINGULAR_MARGIN * depth;
+            this.stack.setExcludedMove(ply, hashMove);
+            eval = search(board, (depth - 1) >>> 1, ply, singularBeta - 1, singularBeta, false);
+            this.stack.setExcludedMove(ply, 0L);
+            this.stack.clearPV(ply);
+            if(this.searchHalted || this.timeReached) return alpha;
+            this.singularSearches ++;
+            if(eval < singularBeta) {
+                singular = true;
+                this.singularExtensions ++;
+            } else if(singularBeta >= beta) {
+                this.multiCuts ++;
+                return beta;
+            }
+        }
+        /*
+         * futility pruning, if the static eval plus a margin for the depth can't
+         * reach alpha, quiet moves which don't give check are skipped once a move
+         * has been searched
+         */
+        boolean futile = this.futilityPruning && !inCheck && !pvNode && depth <= FUTILITY_MAX_DEPTH && Math.abs(alpha) < MATE_BOUND && staticEval + FUTILITY_MARGIN[depth] <= alpha;
+        long previousMove = this.stack.previousMove(ply);
+        long followUpMove = this.stack.followUpMove(ply);
+        ContinuationHistory continuationHistory = this.stack.continuationHistory();
+        this.counters[inCheck ? SearchStats.GEN_EVASIONS : SearchStats.GEN_MOVES] ++;
+        long[] localMoveList = inCheck ? Gen.genEvasions(board, this.stack.moveList(ply)) : Gen.gen(board, false, this.stack.moveList(ply));
         int localMoveListLength = (int) localMoveList[Gen.MOVELIST_SIZE];
+        Sort.sortNoEval(board, localMoveList, hashMove, this.history, continuationHistory, ply, previousMove, followUpMove);
+        long[] quietMoves = this.stack.quietMoves(ply);
+        int quietMovesLength = 0;
+        boolean quiet;
+        boolean givesCheck;
+        int newDepth;
         long[] boardAfterMove;
         long move;
-        int eval;
-        int[] childPV = new int[MAX_PV_LENGTH];
+        long bestMove = 0L;
         int bestEval = -INFINITY;
+        int originalAlpha = alpha;
+        int legalMoves = 0;
+        int reduction;
         for(int moveIndex = 0; moveIndex < localMoveListLength; moveIndex ++) {
             move = localMoveList[moveIndex];
-            boardAfterMove = Board.makeMove(board, move);
+            if(move == excludedMove) continue;
+            boardAfterMove = Board.makeMove(board, move, this.stack.board(ply + 1));
             if(Board.isPlayerInCheck(boardAfterMove, player)) continue;
-            childPV[0] = 0;
-            eval = -search(boardAfterMove, depth - 1, -beta, -alpha,  childPV);
+            this.stack.setMove(ply, move);
+            quiet = ((int) move >>> Board.TARGET_PIECE_SHIFT & Piece.TYPE) == Piece.EMPTY && ((int) move >>> Board.PROMOTE_PIECE_SHIFT & Piece.TYPE) == Piece.EMPTY;
+            givesCheck = Board.isPlayerInCheck(boardAfterMove, 1 ^ player);
+            if(futile && quiet && legalMoves > 0 && !givesCheck && !this.history.isKiller(ply, move)) {
+                legalMoves ++;
+                continue;
+            }
+            /*
+             * extend moves which give check and a singular hash move by one ply,
+             * limited to twice the depth of the iteration so that long sequences of
+             * extensions can't run away
+             */
+            newDepth = depth - 1 + ((givesCheck || (singular && move == hashMove)) && ply < this.currentSearchDepth << 1 ? 1 : 0);
+            /*
+             * principal variation search, the first legal move is searched with the
+             * full window, later moves are expected to fail low so they are searched
+             * with a null window and only searched again if they beat alpha. Late
+             * quiet moves are also searched to a reduced depth first, and searched
+             * again to full depth if they beat alpha
+             */
+            if(legalMoves ++ == 0) {
+                eval = -search(boardAfterMove, newDepth, ply + 1, -beta, -alpha, true);
+            } else {
+                reduction = 0;
+                if(quiet && !givesCheck && !this.history.isKiller(ply, move)) {
+                    reduction = lateMoveReduction(depth, legalMoves, Sort.quietScore(move, this.history, continuationHistory, previousMove, followUpMove), pvNode, inCheck);
+                }
+                if(reduction > 0) this.counters[SearchStats.LMR_SEARCHES] ++;
+                eval = -search(boardAfterMove, newDepth - reduction, ply + 1, -alpha - 1, -alpha, true);
+                if(eval > alpha && reduction > 0) {
+                    this.counters[SearchStats.LMR_RESEARCHES] ++;
+                    eval = -search(boardAfterMove, newDepth, ply + 1, -alpha - 1, -alpha, true);
+                }
+                if(eval > alpha && eval < beta) {
+                    eval = -search(boardAfterMove, newDepth, ply + 1, -beta, -alpha, true);
+                }
+            }
             if(eval > bestEval) {
                 bestEval = eval;
-                pv[0] = childPV[0] + 1;
-                pv[1] = (int) move;
-                System.arraycopy(childPV, 1, pv, 2, childPV[0]);
-                if(eval >= beta) return beta;
+                bestMove = move;
+                this.stack.updatePV(ply, move);
+                if(eval >= beta) {
+                    if(this.searchHalted || this.timeReached) return beta;
+                    this.betaCutoffs[Math.min(depth, History.MAX_PLY - 1)] ++;
+                    if(legalMoves == 1) this.firstMoveCutoffs[Math.min(depth, History.MAX_PLY - 1)] ++;
+                    if(quiet) updateQuietHistory(ply, move, previousMove, followUpMove, quietMoves, quietMovesLength, depth);
+                    if(excludedMove == 0L) this.tTable.save(key, valueToTable(beta, ply), depth, TTable.BETA, move);
+                    return beta;
+                }
                 if(eval > alpha) {
                     alpha = eval;
                 }
             }
+            if(quiet) quietMoves[quietMovesLength ++] = move;
+        }
+        /*
+         * with no legal moves the side to move is checkmated, scored by the distance
+         * from the root so that shorter mates score higher, or stalemated. With the
+         * hash move left out there may be no other moves, which fails low
+         */
+        if(legalMoves == 0) {
+            if(excludedMove != 0L) return alpha;
+            eval = inCheck ? -MATE_SCORE + ply : 0;
+            return eval <= alpha ? alpha : eval >= beta ? beta : eval;
+        }
+        if(!(this.searchHalted || this.timeReached) && excludedMove == 0L) {
+            this.tTable.save(key, valueToTable(alpha, ply), depth, alpha > originalAlpha ? TTable.EXACT : TTable.ALPHA, bestMove);
         }
-        if(System.currentTimeMillis() - this.startTime >= this.maxSearchTime) {
+        if((!this.pondering && System.currentTimeMillis() - this.timeLimitStartTime >= this.maxSearchTime) || this.nodesSearched >= this.maxNodes) {
             this.timeReached = true;
         }
         return alpha;
     }
 
-    private int quiesce(long[] board, int alpha, int beta) {
-        int standPat = new Eval(board).eval();
-        if(standPat >= beta) return beta;
-        if(standPat + Piece.VALUE[Piece.QUEEN] < alpha) return alpha;
-        if(standPat > alpha) alpha = standPat;
-        long[] localMoveList = Gen.gen(board, false, true);
-        int localMoveListLength = (int) localMoveList[Gen.MOVELIST_SIZE];
-        long move;
+    /**
+     * null move pruning, give the opponent a free move and search the result to a
+     * reduced depth with a null window around beta. If the position is still good
+     * enough to fail high with a move less, a real move would fail high too and the
+     * node can be cut. The reduction grows with depth, and at high depth a fail
+     * high is verified by a reduced search of this node without null moves. Not
+     * tried in PV nodes, in check, directly after another null move or when the
+     * side to move only has pawns left, where zugzwang makes the free move unsound
+     *
+     * @return true if the node fails high and can be cut
+     */
+    private boolean nullMovePrune(long[] board, int depth, int ply, int alpha, int beta, int staticEval, int player) {
+        if(depth < NULL_MOVE_MIN_DEPTH || beta - alpha > 1) return false;
+        if(Board.countMaterialPieces(board, player) == 0) return false;
+        if(staticEval < beta) return false;
+        int reduction = NULL_MOVE_REDUCTION + depth / NULL_MOVE_REDUCTION_DEPTH_DIVISOR;
+        long[] boardAfterNullMove = this.stack.board(ply + 1);
+        System.arraycopy(board, 0, boardAfterNullMove, 0, Board.MAX_BITBOARDS);
+        Board.nullMove(boardAfterNullMove);
+        this.stack.setMove(ply, 0L);
+        this.counters[SearchStats.NULL_MOVE_SEARCHES] ++;
+        int eval = -search(boardAfterNullMove, depth - 1 - reduction, ply + 1, -beta, -beta + 1, false);
+        if(eval < beta || this.searchHalted || this.timeReached) return false;
+        if(depth < NULL_MOVE_VERIFICATION_DEPTH) return true;
+        return search(board, depth - reduction, ply, beta - 1, beta, false) >= beta;
+    }
+
+    /**
+     * search the captures whose static exchange gains enough to lift the static
+     * eval over beta plus the ProbCut margin, each first with a quiescence search
+     * and then if that beats the raised beta with a null window search reduced by
+     * PROBCUT_REDUCTION plies
+     *
+     * @return true if a capture beat the raised beta, so the node can be pruned
+     */
+    private boolean probCutPrune(long[] board, int depth, int ply, int beta, int staticEval, int player) {
+        int probCutBeta = beta + PROBCUT_MARGIN;
+        int statsDepth = Math.min(depth, History.MAX_PLY - 1);
+        this.probCutSearches[statsDepth] ++;
+        this.counters[SearchStats.GEN_CAPTURES] ++;
+        long[] moveList = Gen.gen(board, true, this.stack.moveList(ply));
+        Sort.sortNoEval(board, moveList);
+        int moveListLength = (int) moveList[Gen.MOVELIST_SIZE];
         long[] boardAfterMove;
+        long move;
+        int eval;
+        for(int moveIndex = 0; moveIndex < moveListLength; moveIndex ++) {
+            move = moveList[moveIndex];
+            if(Eval.see(board, (int) move & Board.SQUARE_BITS, (int) move >>> Board.TARGET_SQUARE_SHIFT & Board.SQUARE_BITS, this.seeBoard) < probCutBeta - staticEval) continue;
+            boardAfterMove = Board.makeMove(board, move, this.stack.board(ply + 1));
+            if(Board.isPlayerInCheck(boardAfterMove, player)) continue;
+            this.stack.setMove(ply, move);
+            eval = -quiesce(boardAfterMove, ply + 1, -probCutBeta, -probCutBeta + 1, false);
+            if(eval >= probCutBeta) {
+                eval = -search(boardAfterMove, depth - PROBCUT_REDUCTION, ply + 1, -probCutBeta, -probCutBeta + 1, true);
+            }
+            if(this.searchHalted || this.timeReached) return false;
+            if(eval >= probCutBeta) {
+                this.probCutPrunes[statsDepth] ++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * how far to reduce a late move, looked up from a table which grows with the
+     * log of both the depth and the number of the move. Only called for quiet
+     * moves which aren't killers and don't give check, moves out of check aren't
+     * reduced either. Moves in PV nodes are reduced by one ply less, and
+     * moves with good history and continuation history scores are reduced less
+     * while moves with bad scores are reduced more
+     *
+     * @param moveNumber the number of the move among the legal moves, from 1
+     * @param quietScore the history and continuation history score of the move
+     * @return the number of plies to reduce the move by
+     */
+    private int lateMoveReduction(int depth, int moveNumber, int quietScore, boolean pvNode, boolean inCheck) {
+        if(depth < LMR_MIN_DEPTH || moveNumber <= LMR_MIN_MOVES || inCheck) return 0;
+        int reduction = LMR_REDUCTION[Math.min(depth, LMR_REDUCTION.length - 1)][Math.min(moveNumber, Gen.MAX_MOVELIST_SIZE - 1)];
+        if(pvNode) reduction --;
+        reduction -= quietScore / LMR_HISTORY_DIVISOR;
+        return Math.max(0, Math.min(reduction, depth - 2));
+    }
+
+    /**
+     * reward a quiet move which caused a beta cutoff and penalise the quiet moves
+     * searched before it, in both the history table and the continuation history
+     * following the previous two moves
+     */
+    private void updateQuietHistory(int ply, long move, long previousMove, long followUpMove, long[] quietMoves, int quietMovesLength, int depth) {
+        this.history.update(ply, move, previousMove, quietMoves, quietMovesLength, depth);
+        ContinuationHistory continuationHistory = this.stack.continuationHistory();
+        int bonus = History.bonus(depth);
+        continuationHistory.update(move, previousMove, followUpMove, bonus);
+        for(int i = 0; i < quietMovesLength; i ++) {
+            continuationHistory.update(quietMoves[i], previousMove, followUpMove, -bonus);
+        }
+    }
+
+    /**
+     * quiescence search, resolve captures until the position is quiet so that the
+     * static eval isn't taken in the middle of an exchange. A side in check can't
+     * stand pat, so every evasion is searched and a position with none is mate. At
+     * the first ply of the quiescence search quiet moves which give check are
+     * searched as well as captures, so that mates and forks just past the horizon
+     * are seen
+     *
+     * @param checks true to search quiet checks, only at the first ply
+     */
+    private int quiesce(long[] board, int ply, int alpha, int beta, boolean checks) {
+        this.counters[SearchStats.QUIESCENCE_NODES] ++;
         int player = (int) board[Board.STATUS] & Board.PLAYER_BIT;
         int other = 1 ^ player;
+        boolean inCheck = Board.isPlayerInCheck(board, player);
+        if(ply >= History.MAX_PLY - 1) return inCheck ? alpha : Math.max(alpha, Math.min(beta, evaluate(board)));
+        long[] localMoveList;
+        if(inCheck) {
+            this.counters[SearchStats.GEN_EVASIONS] ++;
+            localMoveList = Gen.genEvasions(board, this.stack.moveList(ply));
+        } else {
+            int standPat = evaluate(board);
+            if(standPat >= beta) return beta;
+            if(standPat + Piece.VALUE[Piece.QUEEN] < alpha) return alpha;
+            if(standPat > alpha) alpha = standPat;
+            this.counters[SearchStats.GEN_CAPTURES] ++;
+            localMoveList = Gen.gen(board, true, this.stack.moveList(ply));
+        }
+        int localMoveListLength = (int) localMoveList[Gen.MOVELIST_SIZE];
+        long move;
+        long[] boardAfterMove;
         int eval;
+        int legalMoves = 0;
         boolean otherMaterialPiecesMoreThanOne = Board.countMaterialPieces(board, other) > 1;
         for(int moveIndex = 0; moveIndex < localMoveListLength; moveIndex ++) {
             move = localMoveList[moveIndex];
-            if(otherMaterialPiecesMoreThanOne) {
-                if(Piece.VALUE[(int) move >>> Board.START_PIECE_SHIFT & Piece.TYPE] > Piece.VALUE[(int) move >>> Board.TARGET_PIECE_SHIFT & Piece.TYPE] && Eval.see(board, (int) move & Board.SQUARE_BITS, (int) move >>> Board.TARGET_SQUARE_SHIFT & Board.SQUARE_BITS) > 0) continue;
+            /*
+             * skip captures of a cheaper piece which lose material in the exchange,
+             * every evasion is searched
+             */
+            if(!inCheck && otherMaterialPiecesMoreThanOne) {
+                if(Piece.VALUE[(int) move >>> Board.START_PIECE_SHIFT & Piece.TYPE] > Piece.VALUE[(int) move >>> Board.TARGET_PIECE_SHIFT & Piece.TYPE] && Eval.see(board, (int) move & Board.SQUARE_BITS, (int) move >>> Board.TARGET_SQUARE_SHIFT & Board.SQUARE_BITS, this.seeBoard) < 0) continue;
             }
-            boardAfterMove = Board.makeMove(board, move);
+            boardAfterMove = Board.makeMove(board, move, this.stack.board(ply + 1));
+            if(Board.isPlayerInCheck(boardAfterMove, player)) continue;
+            legalMoves ++;
+            eval = -quiesce(boardAfterMove, ply + 1, -beta, -alpha, false);
+            if(eval >= beta) return beta;
+            if(eval > alpha) alpha = eval;
+        }
+        if(inCheck) {
+            if(legalMoves > 0) return alpha;
+            eval = -MATE_SCORE + ply;
+            return eval <= alpha ? alpha : eval >= beta ? beta : eval;
+        }
+        if(!checks) return alpha;
+        this.counters[SearchStats.GEN_QUIET_CHECKS] ++;
+        localMoveList = Gen.genQuietChecks(board, this.stack.moveList(ply));
+        localMoveListLength = (int) localMoveList[Gen.MOVELIST_SIZE];
+        for(int moveIndex = 0; moveIndex < localMoveListLength; moveIndex ++) {
+            move = localMoveList[moveIndex];
+            boardAfterMove = Board.makeMove(board, move, this.stack.board(ply + 1));
             if(Board.isPlayerInCheck(boardAfterMove, player)) continue;
-            eval = -quiesce(boardAfterMove, -beta, -alpha);
+            eval = -quiesce(boardAfterMove, ply + 1, -beta, -alpha, false);
             if(eval >= beta) return beta;
             if(eval > alpha) alpha = eval;
         }
         return alpha;
     }
 
+    private int evaluate(long[] board) {
+        this.counters[SearchStats.EVAL_CALLS] ++;
+        return this.evaluator.eval(board);
+    }
+
+    /**
+     * whether the side to move is checkmated, only needed where the fifty move
+     * rule would otherwise score the position as a draw
+     */
+    private boolean isCheckmate(long[] board, int ply) {
+        int player = (int) board[Board.STATUS] & Board.PLAYER_BIT;
+        if(!Board.isPlayerInCheck(board, player)) return false;
+        this.counters[SearchStats.GEN_EVASIONS] ++;
+        long[] moveList = Gen.genEvasions(board, this.stack.moveList(ply));
+        for(int moveIndex = 0; moveIndex < (int) moveList[Gen.MOVELIST_SIZE]; moveIndex ++) {
+            if(!Board.isPlayerInCheck(Board.makeMove(board, moveList[moveIndex], this.stack.board(ply + 1)), player)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * remove the moves which aren't search moves from the root move list, unless
+     * that would leave it empty
+     */
+    private void keepSearchMoves(long[] rootMoveList) {
+        int length = (int) rootMoveList[Gen.MOVELIST_SIZE];
+        int kept = 0;
+        long move;
+        for(int moveIndex = 0; moveIndex < length; moveIndex ++) {
+            move = rootMoveList[moveIndex];
+            for(long searchMove : this.searchMoves) {
+                if((move & 0xfffL) == (searchMove & 0xfffL) && ((int) move >>> Board.PROMOTE_PIECE_SHIFT & Piece.TYPE) == ((int) searchMove >>> Board.PROMOTE_PIECE_SHIFT & Piece.TYPE)) {
+                    rootMoveList[kept ++] = move;
+                    break;
+                }
+            }
+        }
+        if(kept > 0) rootMoveList[Gen.MOVELIST_SIZE] = kept;
+    }
+
+    /**
+     * put a root move just searched, its PV left at the first ply of the search
+     * stack, in a line, then move the line up past the lines it scores more than
+     */
+    private void insertLine(int line, long move, int eval, int depth) {
+        this.lineMoves[line] = move & 0xffffffffL;
+        this.lineScores[line] = eval;
+        this.lineDepths[line] = depth;
+        updateLinePV(line, move);
+        for(; line > 0 && this.lineScores[line] > this.lineScores[line - 1]; line --) {
+            swapLines(line, line - 1);
+        }
+    }
+
+    private void swapLines(int line, int other) {
+        long move = this.lineMoves[line];
+        this.lineMoves[line] = this.lineMoves[other];
+        this.lineMoves[other] = move;
+        int score = this.lineScores[line];
+        this.lineScores[line] = this.lineScores[other];
+        this.lineScores[other] = score;
+        int depth = this.lineDepths[line];
+        this.lineDepths[line] = this.lineDepths[other];
+        this.lineDepths[other] = depth;
+        int[] pv = this.linePVs[line];
+        this.linePVs[line] = this.linePVs[other];
+        this.linePVs[other] = pv;
+    }
+
+    /**
+     * set the PV of a line to a root move followed by the PV left at the first
+     * ply of the search stack
+     */
+    private void updateLinePV(int line, long move) {
+        int[] pv = this.linePVs[line];
+        int[] childPV = this.stack.pv(1);
+        pv[0] = childPV[0] + 1;
+        pv[1] = (int) move;
+        System.arraycopy(childPV, 1, pv, 2, childPV[0]);
+    }
+
+    /**
+     * convert a mate score relative to the root into one relative to the current
+     * position before storing it in the transposition table, so that the entry is
+     * right wherever the position is reached in the tree
+     */
+    private static int valueToTable(int eval, int ply) {
+        return eval > MATE_BOUND ? eval + ply : eval < -MATE_BOUND ? eval - ply : eval;
+    }
+
+    private static int valueFromTable(int eval, int ply) {
+        return eval > MATE_BOUND ? eval - ply : eval < -MATE_BOUND ? eval + ply : eval;
+    }
+
+    /**
+     * start the helper searches for a multi-threaded search on the search pool.
+     * Each helper is an independent search of the same root position which shares
+     * the transposition table with this search, the main thread reports the result
+     */
+    private void startHelpers() {
+        if(this.helper || this.pool == null || this.threads < 2) return;
+        this.helpers = new SearchParallel[this.threads - 1];
+        this.helperTasks = new Future<?>[this.threads - 1];
+        for(int i = 0; i < this.helpers.length; i ++) {
+            this.helpers[i] = new SearchParallel(this.board, this.maxDepth, this.maxSearchTime, this.tTable, null, 1);
+            this.helpers[i].helper = true;
+            this.helpers[i].helperIndex = i + 1;
+            this.helpers[i].pondering = this.pondering;
+            if(this.gameHistory != null) this.helpers[i].setGameHistory(this.gameHistory, this.gameHistoryLength);
+            this.helpers[i].searchMoves = this.searchMoves;
+            this.helperTasks[i] = this.pool.submit(this.helpers[i]);
+        }
+    }
+
+    /**
+     * halt the helper searches and wait for them to finish. A helper which failed
+     * is reported as an info string under UCI, as stdout is the UCI channel and
+     * the main thread's result still stands, otherwise the failure is rethrown
+     */
+    private void stopHelpers() {
+        if(this.helpers == null) return;
+        for(SearchParallel helper : this.helpers) {
+            helper.requestHalt();
+        }
+        for(int i = 0; i < this.helperTasks.length; i ++) {
+            try {
+                this.helperTasks[i].get();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch(ExecutionException e) {
+                Throwable cause = e.getCause();
+                if(!this.uci) throw new IllegalStateException("helper search " + (i + 1) + " failed", cause);
+                System.out.println("info string helper search " + (i + 1) + " failed: " + cause);
+            }
+        }
+    }
+
+    /**
+     * the UCI score of an eval, in centipawns or in moves to mate
+     */
+    private static String scoreString(int eval) {
+        if(eval > MATE_BOUND) return "mate " + ((MATE_SCORE - eval + 1) / 2);
+        if(eval < -MATE_BOUND) return "mate " + -((MATE_SCORE + eval) / 2);
+        return "cp " + eval;
+    }
+
     private void sendInfo() {
         long currentTime = System.currentTimeMillis();
         System.out.println("info depth " + this.currentSearchDepth);
-        System.out.println("info score cp " + this.currentBestScore + " depth " + this.bestScoreFoundAtDepth + " nodes " + (this.nodesSearched - this.currentDepthNodes) + " time " + (currentTime - this.infoTimeElapsed) + " pv " + pv());
+        String nodesAndTime = " nodes " + (this.nodesSearched - this.currentDepthNodes) + " time " + (currentTime - this.infoTimeElapsed);
+        if(this.multiPV == 1) {
+            System.out.println("info score " + scoreString(this.currentBestScore) + " depth " + this.bestScoreFoundAtDepth + nodesAndTime + " pv " + pv());
+        } else {
+            for(int line = 0; line < this.multiPV && this.lineMoves[line] != 0L; line ++) {
+                System.out.println("info multipv " + (line + 1) + " score " + scoreString(this.lineScores[line]) + " depth " + this.lineDepths[line] + nodesAndTime + " pv " + pv(line));
+            }
+        }
         this.infoTimeElapsed = currentTime;
-        int elapsedSeconds = (int) ((currentTime - this.startTime) / 1000);
-        long nps = elapsedSeconds > 0 ? this.nodesSearched / elapsedSeconds : this.nodesSearched;
-        System.out.println("info nps " + nps);
+        long nps = nodes() * 1000L / Math.max(1L, currentTime - this.startTime);
+        System.out.println("info nps " + nps + " hashfull " + this.tTable.hashfull());
+        System.out.println("info string first move cutoffs " + String.format("%.1f", firstMoveCutoffRate()) + "%");
+        long probCutSearches = 0L;
+        long probCutPrunes = 0L;
+        for(int depth = 1; depth < History.MAX_PLY; depth ++) {
+            probCutSearches += probCutSearches(depth);
+            probCutPrunes += probCutPrunes(depth);
+        }
+        System.out.println("info string probcut searches " + probCutSearches + " prunes " + probCutPrunes);
+        System.out.println("info string singular searches " + singularSearches() + " extensions " + singularExtensions() + " multi-cuts " + multiCuts());
     }
 
 }
@@ -0,0 +1,186 @@
+package minchessv0.search;
+
+import minchessv0.board.Board;
+import minchessv0.gen.Gen;
+import minchessv0.sort.ContinuationHistory;
+import minchessv0.sort.History;
+
+/**
+ * the state of a search kept for each ply from the root, one frame per ply
+ * holding the board, move list, quiet moves, PV and move of the position at
+ * that ply. Everything is allocated once when the stack is
+ * created so that the search itself allocates nothing. Killer moves are kept
+ * per ply in History alongside the history tables
+ */
+public class SearchStack {
+
+    /**
+     * the number of plies without a capture or pawn move after which the game is
+     * drawn, no position further back than this can be repeated
+     */
+    public static final int MAX_REVERSIBLE_PLIES = 100;
+
+    public SearchStack() {
+        this.moves = new long[History.MAX_PLY];
+        this.excludedMoves = new long[History.MAX_PLY];
+        this.keys = new long[MAX_REVERSIBLE_PLIES + History.MAX_PLY];
+        this.rootIndex = 0;
+        this.continuationHistory = new ContinuationHistory();
+        this.boards = new long[History.MAX_PLY + 1][Board.MAX_BITBOARDS];
+        this.moveLists = new long[History.MAX_PLY][Gen.MAX_MOVELIST_SIZE];
+        this.quietMoves = new long[History.MAX_PLY][Gen.MAX_MOVELIST_SIZE];
+        this.pv = new int[History.MAX_PLY + 1][History.MAX_PLY + 1];
+    }
+
+    /**
+     * set the keys of the positions played in the game before the search, so that
+     * a search can find repetitions of them. Only the last MAX_REVERSIBLE_PLIES
+     * keys before the root are kept
+     *
+     * @param keys   the keys of the game's positions in the order they were
+     *               played, the last of them the root position
+     * @param length the number of keys in the array
+     */
+    public void setGameHistory(long[] keys, int length) {
+        int kept = Math.min(length, MAX_REVERSIBLE_PLIES + 1);
+        System.arraycopy(keys, length - kept, this.keys, 0, kept);
+        this.rootIndex = Math.max(0, kept - 1);
+    }
+
+    /**
+     * record the key of the position at a ply
+     */
+    public void setKey(int ply, long key) {
+        this.keys[this.rootIndex + ply] = key;
+    }
+
+    /**
+     * whether the position at a ply repeats an earlier position with the same
+     * player to move. The keys are scanned back two plies at a time, no further
+     * than the half move clock allows since a capture or pawn move can't be
+     * undone, and no further than a null move in the search. A repetition inside
+     * the search counts as a draw the first time, as the side which could avoid
+     * it would have to have done so, but a position from before the root must
+     * have occurred twice before to make a threefold repetition
+     *
+     * @param ply           the ply of the position, its key set by setKey
+     * @param halfMoveClock the half move clock of the position
+     * @return true if the position should be scored as a draw
+     */
+    public boolean isRepetition(int ply, int halfMoveClock) {
+        int index = this.rootIndex + ply;
+        long key = this.keys[index];
+        int end = Math.max(0, index - halfMoveClock);
+        int count = 0;
+        int movePly;
+        for(int i = index - 2; i >= end; i -= 2) {
+            movePly = i - this.rootIndex;
+            if(movePly >= 0 && (this.moves[movePly] == 0L || this.moves[movePly + 1] == 0L)) return false;
+            if(this.keys[i] != key) continue;
+            if(movePly >= 0 || ++ count == 2) return true;
+        }
+        return false;
+    }
+
+    /**
+     * record the move made at a ply, 0 for a null move
+     */
+    public void setMove(int ply, long move) {
+        this.moves[ply] = move;
+    }
+
+    /**
+     * the move made to reach a position at a ply
+     *
+     * @return the move, or 0 at the root or after a null move
+     */
+    public long previousMove(int ply) {
+        return ply > 0 ? this.moves[ply - 1] : 0L;
+    }
+
+    /**
+     * the move made two plies before a position, the side to move's own last move
+     *
+     * @return the move, or 0 near the root or after a null move
+     */
+    public long followUpMove(int ply) {
+        return ply > 1 ? this.moves[ply - 2] : 0L;
+    }
+
+    /**
+     * set the move left out of the search of the position at a ply, for the
+     * singular extension search
+     *
+     * @param move the move to leave out, or 0 to search every move
+     */
+    public void setExcludedMove(int ply, long move) {
+        this.excludedMoves[ply] = move;
+    }
+
+    public long excludedMove(int ply) {
+        return this.excludedMoves[ply];
+    }
+
+    public ContinuationHistory continuationHistory() {
+        return this.continuationHistory;
+    }
+
+    /**
+     * the board array for the position at a ply, a move made at a ply is made
+     * into the board array of the next ply
+     */
+    public long[] board(int ply) {
+        return this.boards[ply];
+    }
+
+    /**
+     * the moves array for the moves generated at a ply, shared by everything
+     * which generates moves at the ply one after another
+     */
+    public long[] moveList(int ply) {
+        return this.moveLists[ply];
+    }
+
+    /**
+     * the array of quiet moves searched at a ply, penalised in the history
+     * tables when a later quiet move causes a beta cutoff
+     */
+    public long[] quietMoves(int ply) {
+        return this.quietMoves[ply];
+    }
+
+    /**
+     * the PV of the position at a ply, its length in the first element followed
+     * by the moves. The PVs form a triangular table, each ply's PV is its best
+     * move followed by the PV of the next ply
+     */
+    public int[] pv(int ply) {
+        return this.pv[ply];
+    }
+
+    public void clearPV(int ply) {
+        this.pv[ply][0] = 0;
+    }
+
+    /**
+     * set the PV at a ply to a move followed by the PV of the next ply
+     */
+    public void updatePV(int ply, long move) {
+        int[] pv = this.pv[ply];
+        int[] childPV = this.pv[ply + 1];
+        pv[0] = childPV[0] + 1;
+        pv[1] = (int) move;
+        System.arraycopy(childPV, 1, pv, 2, childPV[0]);
+    }
+
+    private long[] moves;
+    private long[] excludedMoves;
+    private long[] keys;
+    private int rootIndex;
+    private ContinuationHistory continuationHistory;
+    private long[][] boards;
+    private long[][] moveLists;
+    private long[][] quietMoves;
+    private int[][] pv;
+
+}
@@ -0,0 +1,74 @@
+package minchessv0.search;
+
+/**
+ * counters of what a search did. Each search thread counts into its own array,
+ * so counting needs no synchronisation, and the arrays of the threads are added
+ * up into a SearchStats when the counters are wanted
+ */
+public class SearchStats {
+
+    public static final int NODES = 0;
+    public static final int QUIESCENCE_NODES = 1;
+    public static final int TT_PROBES = 2;
+    public static final int TT_HITS = 3;
+    public static final int TT_CUTS = 4;
+    public static final int NULL_MOVE_SEARCHES = 5;
+    public static final int NULL_MOVE_CUTS = 6;
+    public static final int LMR_SEARCHES = 7;
+    public static final int LMR_RESEARCHES = 8;
+    public static final int BETA_CUTOFFS = 9;
+    public static final int FIRST_MOVE_CUTOFFS = 10;
+    public static final int EVAL_CALLS = 11;
+    public static final int GEN_MOVES = 12;
+    public static final int GEN_EVASIONS = 13;
+    public static final int GEN_CAPTURES = 14;
+    public static final int GEN_QUIET_CHECKS = 15;
+    public static final int COUNTERS = 16;
+
+    public SearchStats() {
+        this.counters = new long[COUNTERS];
+    }
+
+    /**
+     * add a search thread's counters
+     *
+     * @param counters an array of COUNTERS counters indexed by the constants
+     */
+    public void add(long[] counters) {
+        for(int counter = 0; counter < COUNTERS; counter ++) {
+            this.counters[counter] += counters[counter];
+        }
+    }
+
+    public void add(int counter, long value) {
+        this.counters[counter] += value;
+    }
+
+    public long get(int counter) {
+        return this.counters[counter];
+    }
+
+    /**
+     * the stats as UCI info string lines, with the rates that tuning looks at
+     */
+    public String[] infoStrings() {
+        return new String[] {
+            "info string stats nodes " + get(NODES) + " qnodes " + get(QUIESCENCE_NODES),
+            "info string stats tt probes " + get(TT_PROBES) + " hits " + get(TT_HITS) + " " + percent(TT_HITS, TT_PROBES) + " cuts " + get(TT_CUTS) + " " + percent(TT_CUTS, TT_PROBES),
+            "info string stats null move searches " + get(NULL_MOVE_SEARCHES) + " cuts " + get(NULL_MOVE_CUTS) + " " + percent(NULL_MOVE_CUTS, NULL_MOVE_SEARCHES),
+            "info string stats lmr searches " + get(LMR_SEARCHES) + " re-searches " + get(LMR_RESEARCHES) + " " + percent(LMR_RESEARCHES, LMR_SEARCHES),
+            "info string stats beta cutoffs " + get(BETA_CUTOFFS) + " first move " + get(FIRST_MOVE_CUTOFFS) + " " + percent(FIRST_MOVE_CUTOFFS, BETA_CUTOFFS),
+            "info string stats eval calls " + get(EVAL_CALLS) + " gen moves " + get(GEN_MOVES) + " evasions " + get(GEN_EVASIONS) + " captures " + get(GEN_CAPTURES) + " quiet checks " + get(GEN_QUIET_CHECKS)
+        };
+    }
+
+    private long[] counters;
+
+    /**
+     * one counter as a percentage of another
+     */
+    private String percent(int counter, int of) {
+        return String.format("%.1f", get(of) == 0L ? 0.0 : get(counter) * 100.0 / get(of)) + "%";
+    }
+
+}
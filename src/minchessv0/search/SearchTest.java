@@ -50,6 +50,17 @@ public class SearchTest implements Search, Runnable {
         return this.nodes;
     }
 
+    @Override
+    public long ponderMove() {
+        return this.rootPV[0] >= 2 ? (long) this.rootPV[2] : 0L;
+    }
+
+    /**
+     * this search doesn't ponder, so there is nothing to do
+     */
+    @Override
+    public void ponderHit() {}
+
     private static final int INFINITY = 999999;
     private static final int MAX_PV_LENGTH = 20;
 
@@ -0,0 +1,113 @@
+package minchessv0.search;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import minchessv0.util.TTable;
+
+/**
+ * a recorder of the nodes a search visits, written into a file mapped into
+ * memory as a ring buffer of fixed size records so that the last nodes before
+ * a bad move can be read back after the game, or after a crash, with
+ * SearchTraceReader. A node is recorded when its search returns, so the records
+ * of a node's subtree come just before it. The search only records when it
+ * has been given a trace, so without one the cost is a null check per node.
+ * Only the main search thread records
+ *
+ * The file starts with a header of HEADER_SIZE bytes holding MAGIC, the record
+ * size, the number of records the file holds and the number of records written,
+ * followed by the records, each:
+ * 0	 Zobrist key
+ * 8	 move made to reach the node, 0 at the root or after a null move
+ * 12	 best move found, 0 if none
+ * 16	 alpha
+ * 20	 beta
+ * 24	 score returned
+ * 28	 remaining depth
+ * 29	 ply from the root
+ * 30	 node type, TTable.EXACT, TTable.ALPHA if it failed low or TTable.BETA
+ *       if it failed high
+ * 31	 unused
+ * Alpha, beta and the score are from the side to move at the node.
+ * A position searched twice at the same ply, by internal iterative deepening,
+ * a singular extension search or a null move verification search, has a record
+ * for each search
+ */
+public class SearchTrace {
+
+    public static final long MAGIC = 0x4d696e5472616365L;
+    public static final int HEADER_SIZE = 32;
+    public static final int RECORD_SIZE = 32;
+    public static final int RECORD_SIZE_OFFSET = 8;
+    public static final int CAPACITY_OFFSET = 12;
+    public static final int COUNT_OFFSET = 16;
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+    public static final int MAX_CAPACITY = (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE;
+    public static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    /**
+     * create or overwrite a trace file
+     *
+     * @param fileName the trace file
+     * @param capacity the number of records the ring buffer holds, the oldest
+     *                 records being overwritten once it is full, at least 2 as
+     *                 the oldest is left out when the trace is read
+     */
+    public SearchTrace(String fileName, int capacity) {
+        this.capacity = Math.max(2, Math.min(capacity, MAX_CAPACITY));
+        this.count = 0L;
+        try(RandomAccessFile file = new RandomAccessFile(fileName, "rw"); FileChannel channel = file.getChannel()) {
+            channel.truncate(0L);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0L, HEADER_SIZE + (long) this.capacity * RECORD_SIZE);
+        } catch(IOException e) {
+            throw new RuntimeException("Unable to map trace file " + fileName, e);
+        }
+        this.buffer.order(BYTE_ORDER);
+        this.buffer.putLong(0, MAGIC);
+        this.buffer.putInt(RECORD_SIZE_OFFSET, RECORD_SIZE);
+        this.buffer.putInt(CAPACITY_OFFSET, this.capacity);
+        this.buffer.putLong(COUNT_OFFSET, 0L);
+    }
+
+    /**
+     * record a node when its search returns. The count of records in the header
+     * is only updated once the record is written, so every record it counts is
+     * whole. Once the ring buffer is full, the record after the last one counted
+     * is the oldest, which may be half overwritten by the next record, so a
+     * reader leaves that slot out
+     */
+    public void record(long key, long move, long bestMove, int depth, int ply, int alpha, int beta, int score) {
+        int index = HEADER_SIZE + (int) (this.count % this.capacity) * RECORD_SIZE;
+        this.buffer.putLong(index, key);
+        this.buffer.putInt(index + 8, (int) move);
+        this.buffer.putInt(index + 12, (int) bestMove);
+        this.buffer.putInt(index + 16, alpha);
+        this.buffer.putInt(index + 20, beta);
+        this.buffer.putInt(index + 24, score);
+        this.buffer.put(index + 28, (byte) depth);
+        this.buffer.put(index + 29, (byte) ply);
+        this.buffer.put(index + 30, (byte) (score <= alpha ? TTable.ALPHA : score >= beta ? TTable.BETA : TTable.EXACT));
+        VarHandle.releaseFence();
+        this.buffer.putLong(COUNT_OFFSET, ++ this.count);
+    }
+
+    public long count() {
+        return this.count;
+    }
+
+    /**
+     * write the records to the file
+     */
+    public void close() {
+        this.buffer.force();
+    }
+
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private long count;
+
+}
@@ -0,0 +1,225 @@
+package minchessv0.search;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import minchessv0.move.Move;
+import minchessv0.util.TTable;
+
+/**
+ * reads a trace file written by SearchTrace and rebuilds the search tree from
+ * it for offline analysis. The records are read oldest first. As a node is
+ * recorded when its search returns, the subtree of a node is the run of records
+ * just before it with a greater ply, and its children are the records in that
+ * run one ply deeper. A subtree which started before the oldest record left in
+ * the ring buffer is cut short. Once the ring buffer is full, the slot after
+ * the last record counted is left out, as the search may have been part way
+ * through writing it
+ */
+public class SearchTraceReader {
+
+    public SearchTraceReader(String fileName) {
+        MappedByteBuffer buffer;
+        try(RandomAccessFile file = new RandomAccessFile(fileName, "r"); FileChannel channel = file.getChannel()) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+        } catch(IOException e) {
+            throw new RuntimeException("Unable to read trace file " + fileName, e);
+        }
+        buffer.order(SearchTrace.BYTE_ORDER);
+        if(buffer.capacity() < SearchTrace.HEADER_SIZE || buffer.getLong(0) != SearchTrace.MAGIC || buffer.getInt(SearchTrace.RECORD_SIZE_OFFSET) != SearchTrace.RECORD_SIZE) {
+            throw new RuntimeException(fileName + " isn't a trace file");
+        }
+        int capacity = buffer.getInt(SearchTrace.CAPACITY_OFFSET);
+        this.count = buffer.getLong(SearchTrace.COUNT_OFFSET);
+        this.size = (int) Math.min(this.count, capacity - 1);
+        this.keys = new long[this.size];
+        this.moves = new long[this.size];
+        this.bestMoves = new long[this.size];
+        this.alphas = new int[this.size];
+        this.betas = new int[this.size];
+        this.scores = new int[this.size];
+        this.depths = new int[this.size];
+        this.plies = new int[this.size];
+        this.types = new int[this.size];
+        long first = this.count - this.size;
+        int index;
+        for(int i = 0; i < this.size; i ++) {
+            index = SearchTrace.HEADER_SIZE + (int) ((first + i) % capacity) * SearchTrace.RECORD_SIZE;
+            this.keys[i] = buffer.getLong(index);
+            this.moves[i] = buffer.getInt(index + 8) & 0xffffffffL;
+            this.bestMoves[i] = buffer.getInt(index + 12) & 0xffffffffL;
+            this.alphas[i] = buffer.getInt(index + 16);
+            this.betas[i] = buffer.getInt(index + 20);
+            this.scores[i] = buffer.getInt(index + 24);
+            this.depths[i] = buffer.get(index + 28);
+            this.plies[i] = buffer.get(index + 29);
+            this.types[i] = buffer.get(index + 30);
+        }
+    }
+
+    /**
+     * the number of records read, the oldest first
+     */
+    public int size() {
+        return this.size;
+    }
+
+    public long key(int index) {
+        return this.keys[index];
+    }
+
+    public long move(int index) {
+        return this.moves[index];
+    }
+
+    public long bestMove(int index) {
+        return this.bestMoves[index];
+    }
+
+    public int alpha(int index) {
+        return this.alphas[index];
+    }
+
+    public int beta(int index) {
+        return this.betas[index];
+    }
+
+    public int score(int index) {
+        return this.scores[index];
+    }
+
+    public int depth(int index) {
+        return this.depths[index];
+    }
+
+    public int ply(int index) {
+        return this.plies[index];
+    }
+
+    public int type(int index) {
+        return this.types[index];
+    }
+
+    /**
+     * the index of the first record of a node's subtree, the node itself if it
+     * has no children
+     */
+    public int subtreeStart(int index) {
+        int start = index;
+        while(start > 0 && this.plies[start - 1] > this.plies[index]) start --;
+        return start;
+    }
+
+    /**
+     * the indexes of a node's children in the order they were searched
+     */
+    public int[] children(int index) {
+        int start = subtreeStart(index);
+        int childPly = this.plies[index] + 1;
+        int children = 0;
+        for(int i = start; i < index; i ++) {
+            if(this.plies[i] == childPly) children ++;
+        }
+        int[] childIndexes = new int[children];
+        children = 0;
+        for(int i = start; i < index; i ++) {
+            if(this.plies[i] == childPly) childIndexes[children ++] = i;
+        }
+        return childIndexes;
+    }
+
+    /**
+     * the index of the last root record, the root of the last completed search
+     * of the root moves
+     *
+     * @return the index, or -1 if there is none
+     */
+    public int lastRoot() {
+        for(int i = this.size - 1; i >= 0; i --) {
+            if(this.plies[i] == 0) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * the index of the last record of a root move
+     *
+     * @param move the move in UCI notation
+     * @return the index, or -1 if the move wasn't searched in the records left
+     */
+    public int lastIndexOf(String move) {
+        for(int i = this.size - 1; i >= 0; i --) {
+            if(this.plies[i] == 1 && Move.string(this.moves[i]).equalsIgnoreCase(move)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * print the last root record and the root moves searched under it
+     */
+    public void printRoot() {
+        println("Records " + this.size + " of " + this.count + " written");
+        int root = lastRoot();
+        if(root < 0) {
+            println("No root record");
+            return;
+        }
+        printTree(root, 1);
+    }
+
+    /**
+     * print the subtree of the last search of a root move
+     *
+     * @param move  the move in UCI notation
+     * @param plies the number of plies below the move to print
+     */
+    public void printTree(String move, int plies) {
+        int index = lastIndexOf(move);
+        if(index < 0) {
+            println("No record of root move " + move);
+            return;
+        }
+        printTree(index, plies);
+    }
+
+    private long count;
+    private int size;
+    private long[] keys;
+    private long[] moves;
+    private long[] bestMoves;
+    private int[] alphas;
+    private int[] betas;
+    private int[] scores;
+    private int[] depths;
+    private int[] plies;
+    private int[] types;
+
+    private void printTree(int index, int plies) {
+        StringBuilder indent = new StringBuilder();
+        for(int ply = 0; ply < this.plies[index]; ply ++) {
+            indent.append("  ");
+        }
+        println(indent + recordString(index));
+        if(plies <= 0) return;
+        for(int child : children(index)) {
+            printTree(child, plies - 1);
+        }
+    }
+
+    private String recordString(int index) {
+        String type = this.types[index] == TTable.EXACT ? "exact" : this.types[index] == TTable.ALPHA ? "upper" : "lower";
+        return (this.plies[index] == 0 ? "root" : this.moves[index] == 0L ? "null" : Move.string(this.moves[index]))
+            + " depth " + this.depths[index] + " window " + this.alphas[index] + " " + this.betas[index]
+            + " score " + this.scores[index] + " " + type
+            + " best " + (this.bestMoves[index] == 0L ? "-" : Move.string(this.bestMoves[index]))
+            + " nodes " + (index - subtreeStart(index) + 1)
+            + " key " + Long.toHexString(this.keys[index]);
+    }
+
+    private static void println(String text) {
+        System.out.println(text);
+    }
+
+}
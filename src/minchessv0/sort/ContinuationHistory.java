@@ -0,0 +1,65 @@
+package minchessv0.sort;
+
+import java.util.Arrays;
+
+import minchessv0.board.Board;
+
+public class ContinuationHistory {
+
+    public static final int MAX_SCORE = 8192;
+
+    public ContinuationHistory() {
+        this.table = new short[PIECE_SQUARE_SIZE * PIECE_SQUARE_SIZE];
+    }
+
+    /**
+     * the continuation score of a quiet move, the sum of its score following the
+     * previous move and its score following the move before that. Either earlier
+     * move may be 0, at the root or after a null move, and then adds nothing
+     *
+     * @param move         the move to score
+     * @param previousMove the move made to reach the position
+     * @param followUpMove the move made before the previous move
+     * @return the score, between -2 * MAX_SCORE and 2 * MAX_SCORE
+     */
+    public int score(long move, long previousMove, long followUpMove) {
+        int moveIndex = index(move);
+        int score = 0;
+        if(previousMove != 0L) score += this.table[index(previousMove) << PIECE_SQUARE_SHIFT | moveIndex];
+        if(followUpMove != 0L) score += this.table[index(followUpMove) << PIECE_SQUARE_SHIFT | moveIndex];
+        return score;
+    }
+
+    /**
+     * update the scores of a quiet move following the previous two moves, with the
+     * same gravity update as the history table so that scores stay within a
+     * short
+     *
+     * @param bonus positive for a move which caused a beta cutoff, negative for a
+     *              move searched before it
+     */
+    public void update(long move, long previousMove, long followUpMove, int bonus) {
+        int moveIndex = index(move);
+        if(previousMove != 0L) addBonus(index(previousMove) << PIECE_SQUARE_SHIFT | moveIndex, bonus);
+        if(followUpMove != 0L) addBonus(index(followUpMove) << PIECE_SQUARE_SHIFT | moveIndex, bonus);
+    }
+
+    public void clear() {
+        Arrays.fill(this.table, (short) 0);
+    }
+
+    private static final int PIECE_SQUARE_SHIFT = 10;
+    private static final int PIECE_SQUARE_SIZE = 1 << PIECE_SQUARE_SHIFT;
+
+    private short[] table;
+
+    private void addBonus(int index, int bonus) {
+        int score = this.table[index];
+        this.table[index] = (short) (score + bonus - score * Math.abs(bonus) / MAX_SCORE);
+    }
+
+    private static int index(long move) {
+        return ((int) move >>> Board.START_PIECE_SHIFT & Board.PIECE_BITS) << 6 | ((int) move >>> Board.TARGET_SQUARE_SHIFT & Board.SQUARE_BITS);
+    }
+
+}
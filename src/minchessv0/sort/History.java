@@ -0,0 +1,103 @@
+package minchessv0.sort;
+
+import java.util.Arrays;
+
+import minchessv0.board.Board;
+
+public class History {
+
+    public static final int MAX_PLY = 128;
+    public static final int MAX_HISTORY = 8192;
+
+    public History() {
+        this.killers = new long[MAX_PLY << 1];
+        this.history = new int[PIECE_SQUARE_SIZE];
+        this.counterMoves = new long[PIECE_SQUARE_SIZE];
+    }
+
+    /**
+     * whether a move is one of the two killer moves at a ply, the last quiet moves
+     * to cause a beta cutoff at that ply
+     */
+    public boolean isKiller(int ply, long move) {
+        int index = ply << 1;
+        return move == this.killers[index] || move == this.killers[index + 1];
+    }
+
+    public long killer(int ply, int slot) {
+        return this.killers[(ply << 1) + slot];
+    }
+
+    /**
+     * the quiet move which last refuted the previous move
+     *
+     * @param previousMove the move made to reach this position, 0 after a null move
+     * @return the counter move, or 0 if there isn't one
+     */
+    public long counterMove(long previousMove) {
+        return previousMove == 0L ? 0L : this.counterMoves[index(previousMove)];
+    }
+
+    /**
+     * the history score of a quiet move, indexed by the moving piece and its target
+     * square, between -MAX_HISTORY and MAX_HISTORY
+     */
+    public int score(long move) {
+        return this.history[index(move)];
+    }
+
+    /**
+     * update the tables after a quiet move causes a beta cutoff. The move becomes
+     * the first killer at this ply and the counter move to the previous move, its
+     * history score is raised and the scores of the quiet moves searched before it
+     * are lowered. The bonus grows with depth, and the update pulls each score
+     * towards the bonus by a fraction of the distance so scores saturate at
+     * MAX_HISTORY rather than overflowing
+     *
+     * @param quietsSearched       the quiet moves searched before the cutoff move
+     * @param quietsSearchedLength the number of moves in quietsSearched
+     */
+    public void update(int ply, long move, long previousMove, long[] quietsSearched, int quietsSearchedLength, int depth) {
+        int index = ply << 1;
+        if(this.killers[index] != move) {
+            this.killers[index + 1] = this.killers[index];
+            this.killers[index] = move;
+        }
+        if(previousMove != 0L) this.counterMoves[index(previousMove)] = move;
+        int bonus = bonus(depth);
+        addBonus(move, bonus);
+        for(int i = 0; i < quietsSearchedLength; i ++) {
+            addBonus(quietsSearched[i], -bonus);
+        }
+    }
+
+    /**
+     * the history bonus for a beta cutoff at a depth
+     */
+    public static int bonus(int depth) {
+        return Math.min(depth * depth, MAX_BONUS);
+    }
+
+    public void clear() {
+        Arrays.fill(this.killers, 0L);
+        Arrays.fill(this.history, 0);
+        Arrays.fill(this.counterMoves, 0L);
+    }
+
+    private static final int PIECE_SQUARE_SIZE = 16 * 64;
+    private static final int MAX_BONUS = 400;
+
+    private long[] killers;
+    private int[] history;
+    private long[] counterMoves;
+
+    private void addBonus(long move, int bonus) {
+        int index = index(move);
+        this.history[index] += bonus - this.history[index] * Math.abs(bonus) / MAX_HISTORY;
+    }
+
+    private static int index(long move) {
+        return ((int) move >>> Board.START_PIECE_SHIFT & Board.PIECE_BITS) << 6 | ((int) move >>> Board.TARGET_SQUARE_SHIFT & Board.SQUARE_BITS);
+    }
+
+}
@@ -11,19 +11,45 @@ public class Sort {
     }
 
     public static void sortNoEval(long[] board, long[] array) {
-        if(array.length == 0) return;
+        sortNoEval(board, array, 0L, null, null, 0, 0L, 0L);
+    }
+
+    /**
+     * sort a move list without evaluating the moves. The hash move is sorted
+     * first, then promotions and captures by the values of the pieces involved.
+     * If a history is given, quiet moves are sorted by the killer moves at this
+     * ply, then the counter move to the previous move, then their history scores
+     * added to their continuation history scores
+     *
+     * @param hashMove            the move stored in the transposition table, or 0
+     * @param history             the killer, counter move and history tables, or
+     *                            null to leave quiet moves in generation order
+     * @param continuationHistory the continuation history table, or null
+     * @param ply                 the ply of the position from the root
+     * @param previousMove        the move made to reach the position, or 0
+     * @param followUpMove        the move made before the previous move, or 0
+     */
+    public static void sortNoEval(long[] board, long[] array, long hashMove, History history, ContinuationHistory continuationHistory, int ply, long previousMove, long followUpMove) {
+        int moveListSize = (int) array[Gen.MOVELIST_SIZE];
+        if(moveListSize == 0) return;
         long move;
         long sortScore;
         int startType;
         int targetType;
         int promoteType;
         int targetSquare;
-        int other = (int) ((8 ^ array[0]) & 8) >>> 3;
+        int other = (int) ((8 ^ (array[0] >>> Board.START_PIECE_SHIFT)) & 8) >>> 3;
         int valueDifference;
-        int moveListSize = (int) array[Gen.MOVELIST_SIZE];
+        long killer1 = history != null ? history.killer(ply, 0) : 0L;
+        long killer2 = history != null ? history.killer(ply, 1) : 0L;
+        long counterMove = history != null ? history.counterMove(previousMove) : 0L;
         for(int i = 0; i < moveListSize; i ++) {
-            move = array[i];
+            move = array[i] & 0xffffffffL;
             sortScore = 0L;
+            if(move == hashMove) {
+                array[i] = move | ((long) HASH_MOVE_SCORE << 32);
+                continue;
+            }
             startType = (int) move >>> Board.START_PIECE_SHIFT & Piece.TYPE;
             targetType = (int) move >>> Board.TARGET_PIECE_SHIFT & Piece.TYPE;
             promoteType = (int) move >>> Board.PROMOTE_PIECE_SHIFT & Piece.TYPE;
@@ -34,6 +60,8 @@ public class Sort {
                 if(targetType != Piece.EMPTY) {
                     valueDifference = Piece.VALUE[targetType] - Piece.VALUE[startType];
                     sortScore += valueDifference + (valueDifference > 50 ? HIGH + valueDifference : valueDifference > -50 ? LOW + valueDifference : !Board.isSquareAttackedByPlayer(board, targetSquare, other) ? LESS : 0);
+                } else if(history != null) {
+                    sortScore = move == killer1 ? KILLER_1 : move == killer2 ? KILLER_2 : move == counterMove ? COUNTER_MOVE : quietScore(move, history, continuationHistory, previousMove, followUpMove);
                 }
             }
             array[i] = (move & 0xffffffffL) | (sortScore << 32);
@@ -44,11 +72,24 @@ public class Sort {
         }
     }
 
+    /**
+     * the history score of a quiet move plus its continuation history score,
+     * scaled to stay below the killer and counter move scores
+     */
+    public static int quietScore(long move, History history, ContinuationHistory continuationHistory, long previousMove, long followUpMove) {
+        if(continuationHistory == null) return history.score(move);
+        return (history.score(move) + continuationHistory.score(move, previousMove, followUpMove)) / 3;
+    }
+
+    private static final int HASH_MOVE_SCORE = 200000;
     private static final int PROMOTE_SCORE = 100000;
     private static final int HIGH = 80000;
     private static final int LOW = 60000;
     private static final int CAPTURE = 20000;
     private static final int LESS = 10000;
+    private static final int KILLER_1 = 9000;
+    private static final int KILLER_2 = 8950;
+    private static final int COUNTER_MOVE = 8900;
 
     private Sort() {}
 
@@ -0,0 +1,70 @@
+package minchessv0.test;
+
+import java.lang.management.ManagementFactory;
+
+import minchessv0.board.Board;
+import minchessv0.search.SearchParallel;
+
+public class AllocationTest {
+
+    private final static String[] POSITION_FEN = {
+        "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+        "r1bq1rk1/pp2ppbp/2np1np1/8/3NP3/2N1BP2/PPPQ2PP/R3KB1R w KQ - 3 9",
+        "2rr3k/pp3pp1/1nnqbN1p/3pN3/2pP4/2P3Q1/PPB4P/R4RK1 w - - 0 1",
+        "8/7p/5k2/5p2/p1p2P2/Pr1pPK2/1P1R3P/8 b - - 0 1"
+    };
+
+    private final static int MIN_DEPTH = 2;
+    private final static int MAX_DEPTH = 8;
+
+    /**
+     * measure the memory allocated by single threaded searches of a few positions
+     * to increasing depths. The search allocates its stack of boards, move lists
+     * and PVs when it is created, so a search only allocates while setting up the
+     * root moves and the bytes allocated stay the same whatever the depth. Bytes
+     * allocated growing with the nodes searched means something in the search
+     * path is allocating. A search to the maximum depth is run first to load the
+     * classes the search uses and let the JIT compile the search, so class
+     * initialisation and the one off allocations made while compiled code is
+     * replaced aren't counted
+     */
+    public static void test() {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        boolean allocationFree = true;
+        SearchParallel warmUp = TestSearch.create(Board.fromFen(POSITION_FEN[0]), MAX_DEPTH);
+        warmUp.run();
+        for(String fen : POSITION_FEN) {
+            long[] board = Board.fromFen(fen);
+            long minBytes = Long.MAX_VALUE;
+            long maxBytes = 0L;
+            for(int depth = MIN_DEPTH; depth <= MAX_DEPTH; depth ++) {
+                SearchParallel search = TestSearch.create(board, depth);
+                long startBytes = threadBean.getThreadAllocatedBytes(threadId);
+                long startTime = System.currentTimeMillis();
+                search.run();
+                long elapsed = System.currentTimeMillis() - startTime;
+                long bytes = threadBean.getThreadAllocatedBytes(threadId) - startBytes;
+                long nodes = search.nodes();
+                minBytes = Math.min(minBytes, bytes);
+                maxBytes = Math.max(maxBytes, bytes);
+                println("Depth " + depth + " nodes " + nodes + " bytes " + bytes + " bytes per node " + String.format("%.3f", (double) bytes / Math.max(1L, nodes)) + " Elapsed: " + elapsed);
+            }
+            /*
+             * the allocation counter is only approximate, so allow for a small
+             * difference between depths
+             */
+            boolean constant = maxBytes - minBytes <= 1024L;
+            if(!constant) allocationFree = false;
+            println(fen + " bytes allocated " + minBytes + " to " + maxBytes + (constant ? " passed" : " FAILED"));
+        }
+        println("Search path allocation free " + allocationFree);
+    }
+
+    private AllocationTest() {}
+
+    private static void println(String text) {
+        System.out.println(text);
+    }
+
+}
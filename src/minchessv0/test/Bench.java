@@ -0,0 +1,77 @@
+package minchessv0.test;
+
+import minchessv0.board.Board;
+import minchessv0.move.Move;
+import minchessv0.search.SearchParallel;
+
+public class Bench {
+
+    public final static int DEFAULT_DEPTH = 7;
+
+    /**
+     * the total nodes of a bench at the default depth. A change which isn't meant
+     * to change the search, such as a speed up, must leave it the same, and a
+     * change which is meant to change the search updates it
+     */
+    public final static long SIGNATURE = 833136L;
+
+    private final static String[] POSITION_FEN = {
+        "r1bqkb1r/pppp1ppp/2n2n2/4p3/2B1P3/5N2/PPPP1PPP/RNBQK2R w KQkq - 4 4",
+        "r1bq1rk1/pp2ppbp/2np1np1/8/3NP3/2N1BP2/PPPQ2PP/R3KB1R w KQ - 3 9",
+        "2r3k1/pp3ppp/2n1b3/3p4/3P4/2PB1N2/P4PPP/1R4K1 w - - 0 20",
+        "2rr3k/pp3pp1/1nnqbN1p/3pN3/2pP4/2P3Q1/PPB4P/R4RK1 w - - 0 1",
+        "6k1/5ppp/8/8/8/8/5PPP/3R2K1 w - - 0 1"
+    };
+
+
+    /**
+     * run the bench at the default depth and check its signature
+     *
+     * @return true if the total nodes match the signature
+     */
+    public static boolean run() {
+        return run(DEFAULT_DEPTH);
+    }
+
+    /**
+     * search the perft positions and a few middlegame positions to a fixed depth,
+     * each with a fresh single threaded search and an empty transposition table
+     * so that the nodes searched are the same on any machine, and print the total
+     * nodes as a signature of the search and the nodes per second as a measure of
+     * its speed
+     *
+     * @param depth the depth to search each position to
+     * @return true if the total nodes match the signature, always true for a
+     *         depth other than the default as there is no signature to check
+     */
+    public static boolean run(int depth) {
+        long totalNodes = 0L;
+        long totalTime = 0L;
+        int position = 0;
+        for(String[] fens : new String[][] { Perft.POSITION_FEN, POSITION_FEN }) {
+            for(String fen : fens) {
+                SearchParallel search = TestSearch.create(Board.fromFen(fen), depth);
+                long startTime = System.currentTimeMillis();
+                search.run();
+                long elapsed = System.currentTimeMillis() - startTime;
+                totalNodes += search.nodes();
+                totalTime += elapsed;
+                println((++ position) + ". " + fen + " bestmove " + Move.string(search.bestMove()) + " nodes " + search.nodes() + " Elapsed: " + elapsed);
+            }
+        }
+        println("Depth " + depth + " positions " + position);
+        println("Nodes searched " + totalNodes);
+        println("Nodes/second " + totalNodes * 1000L / Math.max(1L, totalTime) + " Elapsed: " + totalTime);
+        if(depth != DEFAULT_DEPTH) return true;
+        boolean passed = totalNodes == SIGNATURE;
+        println("Signature " + totalNodes + " expected " + SIGNATURE + (passed ? " passed" : " FAILED"));
+        return passed;
+    }
+
+    private Bench() {}
+
+    private static void println(String text) {
+        System.out.println(text);
+    }
+
+}
@@ -0,0 +1,299 @@
+package minchessv0.test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+
+import minchessv0.board.Board;
+import minchessv0.eval.Eval;
+import minchessv0.game.Game;
+import minchessv0.gen.Gen;
+import minchessv0.search.SearchParallel;
+import minchessv0.util.TTable;
+import minchessv0.util.Value;
+
+public class FixedNodeMatchTest {
+
+    private final static String[] OPENING_FEN = {
+        "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+        "r1bqkb1r/pppp1ppp/2n2n2/4p3/2B1P3/5N2/PPPP1PPP/RNBQK2R w KQkq - 4 4",
+        "rnbqkb1r/pp2pppp/3p1n2/8/3NP3/2N5/PPP2PPP/R1BQKB1R b KQkq - 1 5",
+        "rnbqkb1r/ppp1pppp/5n2/3p4/2PP4/8/PP2PPPP/RNBQKBNR w KQkq - 1 3",
+        "r1bqkbnr/pp1ppppp/2n5/2p5/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 2 3",
+        "rnbqk2r/ppppppbp/5np1/8/2PP4/2N5/PP2PPPP/R1BQKBNR w KQkq - 2 4",
+        "rnbqkbnr/pp2pppp/2p5/3p4/3PP3/8/PPP2PPP/RNBQKBNR w KQkq - 0 3",
+        "r1bq1rk1/pp2ppbp/2np1np1/8/3NP3/2N1BP2/PPPQ2PP/R3KB1R w KQ - 3 9"
+    };
+
+    private final static long NODES = 2000L;
+    private final static long MOVE_TIME = 100L;
+    private final static int MAX_PLIES = 160;
+    private final static int MAX_DEPTH = 64;
+    private final static int ADJUDICATE_EVAL = 400;
+    private final static int PONDER_HITS = 0;
+    private final static int PONDER_MISSES = 1;
+    private final static int PONDER_TIME = 2;
+    private final static int PONDER_SEARCH_TIME = 3;
+    private final static int PONDER_STATS = 4;
+    private final static int GO_DEPTH = 2;
+    private final static long GO_NODES = 100000L;
+
+    /**
+     * play a match between the search with reverse futility pruning, futility
+     * pruning and razoring and the search without them, to check that the nodes
+     * they save aren't paid for with strength
+     */
+    public static void test() {
+        test(search -> search.setFutilityPruning(true), search -> search.setFutilityPruning(false), NODES, MAX_PLIES);
+    }
+
+    /**
+     * play a match between the search with singular extensions and multi-cut and
+     * the search without them, at a fixed time per move since the extension
+     * spends nodes to find better moves and a fixed node match would hide its
+     * cost
+     */
+    public static void singularExtension() {
+        timed(search -> search.setSingularExtension(true), search -> search.setSingularExtension(false), MOVE_TIME, MAX_PLIES);
+    }
+
+    /**
+     * play a timed match between the search which stops early when the best move
+     * has taken most of the nodes of the last iteration and the search which uses
+     * all of its time, to check that the time saved isn't paid for with strength
+     */
+    public static void timeManagement() {
+        timed(search -> search.setTimeManagement(true), search -> search.setTimeManagement(false), MOVE_TIME, MAX_PLIES);
+    }
+
+    /**
+     * play a timed match between the same search with and without pondering, to
+     * measure the think time pondering gains and what it is worth. The machine
+     * may have a single core, so rather than pondering while the opponent
+     * thinks, a side whose expected reply is played ponders on it afterwards for
+     * as long as the opponent thought, then the ponder hit turns it into a
+     * normal search for the move time. A side whose expected reply isn't played
+     * searches as normal, its pondering would have been stopped
+     */
+    public static void ponder() {
+        long[] ponderStats = new long[PONDER_STATS];
+        match(search -> {}, search -> {}, Long.MAX_VALUE, MOVE_TIME, MAX_PLIES, true, ponderStats);
+        long ponderMoves = ponderStats[PONDER_HITS] + ponderStats[PONDER_MISSES];
+        println("Ponder hits " + ponderStats[PONDER_HITS] + " misses " + ponderStats[PONDER_MISSES] + " hit rate " + String.format("%.1f", ponderMoves == 0L ? 0.0 : ponderStats[PONDER_HITS] * 100.0 / ponderMoves) + "%");
+        println("Pondered " + ponderStats[PONDER_TIME] + " ms on hits, searched " + ponderStats[PONDER_SEARCH_TIME] + " ms after them, think time gained on hits " + String.format("%.2f", ponderStats[PONDER_SEARCH_TIME] == 0L ? 0.0 : (double) (ponderStats[PONDER_TIME] + ponderStats[PONDER_SEARCH_TIME]) / ponderStats[PONDER_SEARCH_TIME]) + "x");
+    }
+
+    /**
+     * play a match between two configurations of the search, each move searched to
+     * a fixed number of nodes on a single thread so that the match measures the
+     * quality of the search rather than its speed, and is repeatable. Each opening
+     * is played twice with colours reversed. A game which reaches the ply limit is
+     * adjudicated on the static eval, and the time each side used is reported so
+     * the strength of a change can be weighed against its cost
+     *
+     * @param first    configures the search of the first side
+     * @param second   configures the search of the second side
+     * @param nodes    the number of nodes to search for each move
+     * @param maxPlies the number of plies after which a game is adjudicated
+     * @return the first side's score as a fraction of the points available
+     */
+    public static double test(Consumer<SearchParallel> first, Consumer<SearchParallel> second, long nodes, int maxPlies) {
+        return match(first, second, nodes, Long.MAX_VALUE, maxPlies, false, new long[PONDER_STATS]);
+    }
+
+    /**
+     * play a match as test does, but with each move searched for a fixed time
+     * rather than a fixed number of nodes, so a change which makes the search
+     * slower is charged for it. Results vary from run to run with the load on
+     * the machine
+     *
+     * @param moveTime the time to search each move in milliseconds
+     */
+    public static double timed(Consumer<SearchParallel> first, Consumer<SearchParallel> second, long moveTime, int maxPlies) {
+        return match(first, second, Long.MAX_VALUE, moveTime, maxPlies, false, new long[PONDER_STATS]);
+    }
+
+    /**
+     * search the start position through the UCI loop with go depth and then with
+     * go nodes, and check that the node limited search isn't held to the depth
+     * of the search before it, as the limits of a go command only apply to its
+     * own search
+     *
+     * @return true if the node limited search went deeper than the first search
+     */
+    public static boolean goLimits() throws IOException, InterruptedException {
+        InputStream systemIn = System.in;
+        PrintStream systemOut = System.out;
+        PipedOutputStream commands = new PipedOutputStream();
+        BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+        System.setIn(new PipedInputStream(commands));
+        System.setOut(new PrintStream(new OutputStream() {
+            private StringBuilder line = new StringBuilder();
+
+            @Override
+            public synchronized void write(int b) {
+                if(b != '\n') {
+                    this.line.append((char) b);
+                    return;
+                }
+                lines.add(this.line.toString());
+                this.line.setLength(0);
+            }
+        }, true));
+        Thread gameThread = new Thread(Game.INSTANCE::uci);
+        int[] depths = new int[2];
+        try {
+            gameThread.start();
+            send(commands, "position startpos");
+            send(commands, "go depth " + GO_DEPTH);
+            depths[0] = searchDepth(lines);
+            send(commands, "go nodes " + GO_NODES);
+            depths[1] = searchDepth(lines);
+            send(commands, "quit");
+            gameThread.join();
+        } finally {
+            System.setIn(systemIn);
+            System.setOut(systemOut);
+        }
+        boolean passed = depths[0] == GO_DEPTH && depths[1] > GO_DEPTH;
+        println("go depth " + GO_DEPTH + " searched to depth " + depths[0] + ", then go nodes " + GO_NODES + " searched to depth " + depths[1] + " passed " + passed);
+        return passed;
+    }
+
+    private FixedNodeMatchTest() {}
+
+    private static void send(PipedOutputStream commands, String command) throws IOException {
+        commands.write((command + "\n").getBytes());
+        commands.flush();
+    }
+
+    /**
+     * read the UCI output up to the next bestmove
+     *
+     * @return the depth of the last score reported
+     */
+    private static int searchDepth(BlockingQueue<String> lines) throws InterruptedException {
+        int depth = 0;
+        String line;
+        while(!(line = lines.take()).startsWith("bestmove")) {
+            if(!line.startsWith("info score")) continue;
+            String[] tokens = line.split(" ");
+            for(int i = 0; i < tokens.length - 1; i ++) {
+                if(tokens[i].equals("depth")) depth = Integer.parseInt(tokens[i + 1]);
+            }
+        }
+        return depth;
+    }
+
+    /**
+     * @param firstPonders true if the first side ponders
+     * @param ponderStats  the first side's ponder hits, misses, time pondered and
+     *                     time searched after ponder hits, added to
+     */
+    private static double match(Consumer<SearchParallel> first, Consumer<SearchParallel> second, long nodes, long moveTime, int maxPlies, boolean firstPonders, long[] ponderStats) {
+        int wins = 0;
+        int draws = 0;
+        int losses = 0;
+        long[] elapsed = new long[2];
+        long startTime = System.currentTimeMillis();
+        for(int opening = 0; opening < OPENING_FEN.length; opening ++) {
+            for(int firstColour = Value.WHITE; firstColour <= Value.BLACK; firstColour ++) {
+                long[] board = Board.fromFen(OPENING_FEN[opening]);
+                int whiteSide = firstColour == Value.WHITE ? 0 : 1;
+                boolean[] ponders = { firstPonders && whiteSide == 0, firstPonders && whiteSide == 1 };
+                int result = playGame(board, whiteSide == 0 ? first : second, whiteSide == 0 ? second : first, whiteSide, nodes, moveTime, maxPlies, elapsed, ponders, ponderStats);
+                int firstResult = whiteSide == 0 ? result : -result;
+                if(firstResult > 0) wins ++;
+                else if(firstResult < 0) losses ++;
+                else draws ++;
+                println("Opening " + (opening + 1) + " first side " + (whiteSide == 0 ? "white" : "black") + " result " + (firstResult > 0 ? "win" : firstResult < 0 ? "loss" : "draw"));
+            }
+        }
+        double score = (wins + draws * 0.5) / (wins + draws + losses);
+        println("First side +" + wins + " =" + draws + " -" + losses + " score " + String.format("%.1f", score * 100.0) + "%");
+        println("First side time " + elapsed[0] + " ms, second side time " + elapsed[1] + " ms, Elapsed: " + (System.currentTimeMillis() - startTime));
+        return score;
+    }
+
+    /**
+     * play one game, each side keeping its own transposition table for the game
+     *
+     * @param whiteSide 0 if the first side plays white, used to charge each
+     *                  side's time to the right total
+     * @param ponders   whether each colour ponders
+     * @return 1 if white wins, -1 if black wins, 0 for a draw
+     */
+    private static int playGame(long[] board, Consumer<SearchParallel> white, Consumer<SearchParallel> black, int whiteSide, long nodes, long moveTime, int maxPlies, long[] elapsed, boolean[] ponders, long[] ponderStats) {
+        TTable[] tTables = { TestSearch.newTable(), TestSearch.newTable() };
+        long[] keys = new long[maxPlies + 1];
+        long[] ponderMoves = new long[2];
+        long lastMove = 0L;
+        long lastElapsed = 0L;
+        for(int ply = 0; ply < maxPlies; ply ++) {
+            int player = (int) board[Board.STATUS] & Board.PLAYER_BIT;
+            if(Gen.gen(board, true, false)[Gen.MOVELIST_SIZE] == 0) {
+                if(!Board.isPlayerInCheck(board, player)) return 0;
+                return player == Value.WHITE ? -1 : 1;
+            }
+            if(Board.halfMoveClock(board) >= 100) return 0;
+            keys[ply] = board[Board.KEY];
+            int repetitions = 0;
+            for(int i = ply - 2; i >= 0; i -= 2) {
+                if(keys[i] == keys[ply]) repetitions ++;
+            }
+            if(repetitions >= 2) return 0;
+            SearchParallel search = TestSearch.create(board, MAX_DEPTH, moveTime, tTables[player]);
+            search.setMaxNodes(nodes);
+            search.setGameHistory(keys, ply + 1);
+            (player == Value.WHITE ? white : black).accept(search);
+            long searchStartTime;
+            if(ponders[player] && ponderMoves[player] != 0L && ponderMoves[player] == lastMove) {
+                search.setPonder(true);
+                Thread ponderThread = new Thread(search);
+                ponderThread.start();
+                sleep(lastElapsed);
+                searchStartTime = System.currentTimeMillis();
+                search.ponderHit();
+                try {
+                    ponderThread.join();
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                ponderStats[PONDER_HITS] ++;
+                ponderStats[PONDER_TIME] += lastElapsed;
+                ponderStats[PONDER_SEARCH_TIME] += System.currentTimeMillis() - searchStartTime;
+            } else {
+                if(ponders[player] && ponderMoves[player] != 0L) ponderStats[PONDER_MISSES] ++;
+                searchStartTime = System.currentTimeMillis();
+                search.run();
+            }
+            lastElapsed = System.currentTimeMillis() - searchStartTime;
+            elapsed[player == Value.WHITE ? whiteSide : 1 ^ whiteSide] += lastElapsed;
+            lastMove = search.bestMove();
+            ponderMoves[player] = search.ponderMove();
+            board = Board.makeMove(board, lastMove);
+        }
+        int eval = new Eval(board).eval();
+        if(((int) board[Board.STATUS] & Board.PLAYER_BIT) == Value.BLACK) eval = -eval;
+        return eval > ADJUDICATE_EVAL ? 1 : eval < -ADJUDICATE_EVAL ? -1 : 0;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void println(String text) {
+        System.out.println(text);
+    }
+
+}
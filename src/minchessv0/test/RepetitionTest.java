@@ -0,0 +1,105 @@
+package minchessv0.test;
+
+import minchessv0.board.Board;
+import minchessv0.move.Move;
+import minchessv0.search.SearchParallel;
+import minchessv0.search.SearchStack;
+
+public class RepetitionTest {
+
+    /*
+     * black is a queen down and both knights have gone out and back twice, so
+     * g8 returns to the starting position for the third time
+     */
+    private final static String REPETITION_FEN = "rnb1kbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+    private final static String[] REPETITION_MOVES = { "g1f3", "g8f6", "f3g1", "f6g8", "g1f3", "g8f6", "f3g1" };
+    private final static String REPETITION_BEST_MOVE = "f6g8";
+    private final static int DEPTH = 6;
+    private final static int SCAN_PLY = 10;
+    private final static int SCAN_OPERATIONS = 100000000;
+
+    /**
+     * check that a search given the game's history claims a threefold repetition
+     * when it is losing and doesn't without the history, check the scans of the
+     * search stack on hand built key histories, then time the scan over the
+     * longest history the half move clock allows
+     */
+    public static void test() {
+        long[] board = Board.fromFen(REPETITION_FEN);
+        long[] keys = new long[REPETITION_MOVES.length + 1];
+        keys[0] = board[Board.KEY];
+        for(int i = 0; i < REPETITION_MOVES.length; i ++) {
+            board = Board.makeMove(board, Move.stringToInt(board, REPETITION_MOVES[i]));
+            keys[i + 1] = board[Board.KEY];
+        }
+        String withHistory = search(board, keys, keys.length);
+        String withoutHistory = search(board, keys, 0);
+        println("Repetition with game history " + withHistory + (withHistory.equals(REPETITION_BEST_MOVE) ? " passed" : " FAILED"));
+        println("Repetition without game history " + withoutHistory + (withoutHistory.equals(REPETITION_BEST_MOVE) ? " FAILED" : " passed"));
+        SearchStack stack = new SearchStack();
+        stack.setGameHistory(new long[] { 1L, 2L, 3L, 4L, 1L }, 5);
+        check("Repeated once before the root", stack.isRepetition(0, 10), false);
+        stack.setGameHistory(new long[] { 1L, 2L, 3L, 4L, 1L, 2L, 3L, 4L, 1L }, 9);
+        check("Repeated twice before the root", stack.isRepetition(0, 10), true);
+        check("Repetition before the last capture or pawn move", stack.isRepetition(0, 7), false);
+        stack.setGameHistory(new long[] { 5L }, 1);
+        stack.setMove(0, 1L);
+        stack.setKey(1, 6L);
+        stack.setMove(1, 1L);
+        stack.setKey(2, 7L);
+        stack.setMove(2, 1L);
+        stack.setKey(3, 8L);
+        stack.setMove(3, 1L);
+        stack.setKey(4, 5L);
+        check("Repeated in the search", stack.isRepetition(4, 10), true);
+        stack.setMove(1, 0L);
+        check("Repeated across a null move", stack.isRepetition(4, 10), false);
+        time();
+    }
+
+    private RepetitionTest() {}
+
+    private static String search(long[] board, long[] keys, int length) {
+        SearchParallel search = TestSearch.create(board, DEPTH);
+        if(length > 0) search.setGameHistory(keys, length);
+        search.run();
+        return Move.string(search.bestMove());
+    }
+
+    private static void check(String name, boolean result, boolean expected) {
+        println(name + " " + result + (result == expected ? " passed" : " FAILED"));
+    }
+
+    /**
+     * time the scan at a node searched with the half move clock at its limit and
+     * a full history of distinct keys before the root, so no repetition is found
+     * and the scan runs to the end
+     */
+    private static void time() {
+        SearchStack stack = new SearchStack();
+        long[] keys = new long[SearchStack.MAX_REVERSIBLE_PLIES + 1];
+        long key = 0x9e3779b97f4a7c15L;
+        for(int i = 0; i < keys.length; i ++) {
+            key = key * 6364136223846793005L + 1442695040888963407L;
+            keys[i] = key;
+        }
+        stack.setGameHistory(keys, keys.length);
+        for(int ply = 0; ply <= SCAN_PLY; ply ++) {
+            key = key * 6364136223846793005L + 1442695040888963407L;
+            stack.setMove(ply, 1L);
+            stack.setKey(ply, key);
+        }
+        int repetitions = 0;
+        long startTime = System.nanoTime();
+        for(int i = 0; i < SCAN_OPERATIONS; i ++) {
+            if(stack.isRepetition(SCAN_PLY, SearchStack.MAX_REVERSIBLE_PLIES - 1)) repetitions ++;
+        }
+        long elapsed = System.nanoTime() - startTime;
+        println("Repetition scan of " + (SearchStack.MAX_REVERSIBLE_PLIES / 2) + " keys " + String.format("%.2f", (double) elapsed / SCAN_OPERATIONS) + " ns repetitions " + repetitions);
+    }
+
+    private static void println(String text) {
+        System.out.println(text);
+    }
+
+}
@@ -0,0 +1,224 @@
+package minchessv0.test;
+
+import java.util.function.Consumer;
+
+import minchessv0.board.Board;
+import minchessv0.gen.Gen;
+import minchessv0.move.Move;
+import minchessv0.search.SearchParallel;
+import minchessv0.util.TTable;
+
+public class SearchSuiteTest {
+
+    private final static String[] POSITION_FEN = {
+        "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+        "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+        "r1bqkb1r/pppp1ppp/2n2n2/4p3/2B1P3/5N2/PPPP1PPP/RNBQK2R w KQkq - 4 4",
+        "r1bq1rk1/pp2ppbp/2np1np1/8/3NP3/2N1BP2/PPPQ2PP/R3KB1R w KQ - 3 9",
+        "2r3k1/pp3ppp/2n1b3/3p4/3P4/2PB1N2/P4PPP/1R4K1 w - - 0 20",
+        "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+        "6k1/5ppp/8/8/8/8/5PPP/3R2K1 w - - 0 1"
+    };
+
+    private final static int DEPTH = 4;
+    private final static int MAX_DEPTH = 64;
+
+    /**
+     * search a fixed set of positions to a fixed depth with a fresh single
+     * threaded search and an empty transposition table for each, and report the
+     * nodes searched and the percentage of cutoffs caused by the first move, in
+     * total and for each remaining depth, and how often singular extensions and
+     * ProbCut were tried and succeeded. Used to measure the effect of search
+     * changes on the size of the tree at a given depth
+     */
+    public static void test() {
+        test(DEPTH);
+    }
+
+    public static long test(int depth) {
+        return test(depth, search -> {});
+    }
+
+    /**
+     * search the positions with each of the ways of handling a node without a
+     * hash move, to compare the nodes and first move cutoff rates of internal
+     * iterative reduction and deepening against doing nothing
+     */
+    public static void internalIterative(int depth) {
+        String[] names = { "none", "reduction", "deepening" };
+        int[] modes = { SearchParallel.INTERNAL_ITERATIVE_NONE, SearchParallel.INTERNAL_ITERATIVE_REDUCTION, SearchParallel.INTERNAL_ITERATIVE_DEEPENING };
+        for(int i = 0; i < modes.length; i ++) {
+            final int mode = modes[i];
+            println("Internal iterative " + names[i]);
+            test(depth, search -> search.setInternalIterative(mode));
+        }
+    }
+
+    /**
+     * search the positions with a single PV and then with several, to measure
+     * what the extra lines cost. The root moves are searched once, a move outside
+     * the lines only searched in full if it beats the worst of them, so the cost
+     * should be well under one search per line. The lines of each position are
+     * printed best first
+     *
+     * @param lines the number of lines of the MultiPV search
+     */
+    public static void multiPV(int depth, int lines) {
+        println("Single PV");
+        long singleNodes = test(depth);
+        println("MultiPV " + lines);
+        long multiNodes = test(depth, search -> search.setMultiPV(lines));
+        println("MultiPV " + lines + " nodes " + multiNodes + " single PV nodes " + singleNodes + " ratio " + String.format("%.2f", (double) multiNodes / singleNodes));
+    }
+
+    /**
+     * search the positions with several lines to each depth from 2, the first
+     * depth searched, up to a depth, and check that the line scores don't
+     * increase from the first line onward and that the best move is the first
+     * line's move
+     *
+     * @return true if the lines of every search were in order
+     */
+    public static boolean multiPVOrder(int depth, int lines) {
+        boolean ordered = true;
+        for(int position = 0; position < POSITION_FEN.length; position ++) {
+            for(int searchDepth = 2; searchDepth <= depth; searchDepth ++) {
+                SearchParallel search = TestSearch.create(Board.fromFen(POSITION_FEN[position]), searchDepth);
+                search.setMultiPV(lines);
+                search.run();
+                boolean inOrder = search.bestMove() == search.bestMove(0);
+                String scores = "" + search.score(0);
+                for(int line = 1; line < lines && search.bestMove(line) != 0L; line ++) {
+                    if(search.score(line) > search.score(line - 1)) inOrder = false;
+                    scores += " " + search.score(line);
+                }
+                if(!inOrder) {
+                    ordered = false;
+                    println((position + 1) + ". depth " + searchDepth + " lines out of order, best move " + Move.string(search.bestMove()) + " scores " + scores);
+                }
+            }
+        }
+        println("MultiPV " + lines + " to depth " + depth + " lines in order " + ordered);
+        return ordered;
+    }
+
+    /**
+     * search each position twice to a depth with the same transposition table,
+     * so that the second search's PV is cut short by a table cutoff at the first
+     * ply, and check that a search whose PV is one move long still has a ponder
+     * move when the best move leaves the opponent a legal reply
+     *
+     * @return true if every truncated PV had a ponder move
+     */
+    public static boolean ponderMove(int depth) {
+        boolean found = true;
+        int truncated = 0;
+        for(int position = 0; position < POSITION_FEN.length; position ++) {
+            TTable tTable = TestSearch.newTable();
+            for(int run = 0; run < 2; run ++) {
+                long[] board = Board.fromFen(POSITION_FEN[position]);
+                SearchParallel search = TestSearch.create(board, depth, tTable);
+                search.run();
+                if(search.pv().trim().indexOf(' ') >= 0) continue;
+                long[] moveList = Gen.gen(Board.makeMove(board, search.bestMove()), true, false);
+                if(moveList[Gen.MOVELIST_SIZE] == 0L) continue;
+                truncated ++;
+                if(search.ponderMove() == 0L) found = false;
+                println((position + 1) + ". run " + (run + 1) + " pv " + search.pv() + "ponder " + (search.ponderMove() == 0L ? "none" : Move.string(search.ponderMove())));
+            }
+        }
+        println("Truncated PVs " + truncated + " ponder move found for all " + found);
+        return found;
+    }
+
+    /**
+     * search each position twice to a number of nodes with a fresh single
+     * threaded search and an empty transposition table, and check that both
+     * searches return the same nodes, best move and PV. A node limited search
+     * has no time limit, so its result doesn't depend on the speed of the
+     * machine, and the total nodes can be compared between builds
+     *
+     * @param nodes the number of nodes to search each position to
+     * @return the total nodes of the first searches
+     */
+    public static long nodes(long nodes) {
+        long totalNodes = 0L;
+        boolean reproducible = true;
+        long startTime = System.currentTimeMillis();
+        for(int position = 0; position < POSITION_FEN.length; position ++) {
+            SearchParallel[] searches = new SearchParallel[2];
+            for(int run = 0; run < searches.length; run ++) {
+                searches[run] = TestSearch.create(Board.fromFen(POSITION_FEN[position]), MAX_DEPTH);
+                searches[run].setMaxNodes(nodes);
+                searches[run].run();
+            }
+            boolean same = searches[0].nodes() == searches[1].nodes() && searches[0].bestMove() == searches[1].bestMove() && searches[0].pv().equals(searches[1].pv());
+            if(!same) reproducible = false;
+            totalNodes += searches[0].nodes();
+            println((position + 1) + ". " + Move.string(searches[0].bestMove()) + " nodes " + searches[0].nodes() + " pv " + searches[0].pv() + (same ? "" : " DIFFERS " + Move.string(searches[1].bestMove()) + " nodes " + searches[1].nodes() + " pv " + searches[1].pv()));
+        }
+        println("Nodes " + nodes + " total nodes " + totalNodes + " reproducible " + reproducible + " Elapsed: " + (System.currentTimeMillis() - startTime));
+        return totalNodes;
+    }
+
+    /**
+     * @param configure configures each search before it is run
+     * @return the total nodes searched
+     */
+    public static long test(int depth, Consumer<SearchParallel> configure) {
+        long totalNodes = 0L;
+        long singularSearches = 0L;
+        long singularExtensions = 0L;
+        long multiCuts = 0L;
+        long[] betaCutoffs = new long[depth + 1];
+        long[] firstMoveCutoffs = new long[depth + 1];
+        long[] probCutSearches = new long[depth + 1];
+        long[] probCutPrunes = new long[depth + 1];
+        long startTime = System.currentTimeMillis();
+        for(int position = 0; position < POSITION_FEN.length; position ++) {
+            SearchParallel search = TestSearch.create(Board.fromFen(POSITION_FEN[position]), depth);
+            configure.accept(search);
+            long positionStartTime = System.currentTimeMillis();
+            search.run();
+            totalNodes += search.nodes();
+            singularSearches += search.singularSearches();
+            singularExtensions += search.singularExtensions();
+            multiCuts += search.multiCuts();
+            for(int cutoffDepth = 1; cutoffDepth <= depth; cutoffDepth ++) {
+                betaCutoffs[cutoffDepth] += search.betaCutoffs(cutoffDepth);
+                firstMoveCutoffs[cutoffDepth] += search.firstMoveCutoffs(cutoffDepth);
+                probCutSearches[cutoffDepth] += search.probCutSearches(cutoffDepth);
+                probCutPrunes[cutoffDepth] += search.probCutPrunes(cutoffDepth);
+            }
+            println((position + 1) + ". " + Move.string(search.bestMove()) + " nodes " + search.nodes() + " Elapsed: " + (System.currentTimeMillis() - positionStartTime) + " first move cutoffs " + String.format("%.1f", search.firstMoveCutoffRate()) + "% pv " + search.pv());
+            for(int line = 1; line < search.multiPV() && search.bestMove(line) != 0L; line ++) {
+                println("   line " + (line + 1) + " score " + search.score(line) + " pv " + search.pv(line));
+            }
+        }
+        long cutoffs = 0L;
+        long firstCutoffs = 0L;
+        for(int cutoffDepth = 1; cutoffDepth <= depth; cutoffDepth ++) {
+            cutoffs += betaCutoffs[cutoffDepth];
+            firstCutoffs += firstMoveCutoffs[cutoffDepth];
+        }
+        println("Depth " + depth + " total nodes " + totalNodes + " first move cutoffs " + String.format("%.1f", cutoffs == 0L ? 0.0 : firstCutoffs * 100.0 / cutoffs) + "% Elapsed: " + (System.currentTimeMillis() - startTime));
+        println("Singular searches " + singularSearches + " extensions " + singularExtensions + " multi-cuts " + multiCuts);
+        for(int cutoffDepth = 1; cutoffDepth <= depth; cutoffDepth ++) {
+            if(betaCutoffs[cutoffDepth] == 0L) continue;
+            println("Depth " + cutoffDepth + " cutoffs " + betaCutoffs[cutoffDepth] + " first move cutoffs " + String.format("%.1f", firstMoveCutoffs[cutoffDepth] * 100.0 / betaCutoffs[cutoffDepth]) + "%");
+        }
+        for(int probCutDepth = 1; probCutDepth <= depth; probCutDepth ++) {
+            if(probCutSearches[probCutDepth] == 0L) continue;
+            println("Depth " + probCutDepth + " probcut searches " + probCutSearches[probCutDepth] + " prunes " + probCutPrunes[probCutDepth] + " " + String.format("%.1f", probCutPrunes[probCutDepth] * 100.0 / probCutSearches[probCutDepth]) + "%");
+        }
+        return totalNodes;
+    }
+
+    private SearchSuiteTest() {}
+
+    private static void println(String text) {
+        System.out.println(text);
+    }
+
+}
@@ -0,0 +1,50 @@
+package minchessv0.test;
+
+import minchessv0.board.Board;
+import minchessv0.gen.Gen;
+import minchessv0.move.Move;
+import minchessv0.search.SearchParallel;
+import minchessv0.util.TTable;
+
+public class SelfPlayTest {
+
+    private final static int DEPTH = 4;
+    private final static int MOVES = 40;
+    private final static int HASH_SIZE_IN_MB = 1;
+
+    /**
+     * play a game against itself from the starting position at a fixed depth,
+     * keeping one transposition table for the whole game as in a real game. The
+     * table is kept small so that replacement decides which entries survive from
+     * move to move, fewer total nodes means more useful entries were kept
+     */
+    public static void test() {
+        test(Board.FEN_STARTING_POSITION, DEPTH, MOVES, HASH_SIZE_IN_MB);
+    }
+
+    public static long test(String fen, int depth, int moves, int hashSizeInMB) {
+        long[] board = Board.fromFen(fen);
+        TTable tTable = new TTable(hashSizeInMB);
+        long totalNodes = 0L;
+        long startTime = System.currentTimeMillis();
+        for(int moveNumber = 1; moveNumber <= moves; moveNumber ++) {
+            if(Gen.gen(board, true, false)[Gen.MOVELIST_SIZE] == 0) break;
+            SearchParallel search = TestSearch.create(board, depth, tTable);
+            search.run();
+            long move = search.bestMove();
+            if(move == 0L) break;
+            totalNodes += search.nodes();
+            println(moveNumber + ". " + Move.string(move) + " nodes " + search.nodes() + " hashfull " + tTable.hashfull());
+            board = Board.makeMove(board, move);
+        }
+        println("Total nodes " + totalNodes + " Elapsed: " + (System.currentTimeMillis() - startTime));
+        return totalNodes;
+    }
+
+    private SelfPlayTest() {}
+
+    private static void println(String text) {
+        System.out.println(text);
+    }
+
+}
@@ -0,0 +1,165 @@
+package minchessv0.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import minchessv0.util.TTable;
+import minchessv0.util.TTableFile;
+import minchessv0.util.TTableOffHeap;
+import minchessv0.util.TranspositionTable;
+
+public class TTableTest {
+
+    private final static int[] SIZE_IN_MB = { 1024, 8192, 32768 };
+    private final static int COMPARE_SIZE_IN_MB = 16384;
+    private final static int COMPARE_OPERATIONS = 10000000;
+    private final static int SNAPSHOT_SIZE_IN_MB = 1;
+    private final static int SNAPSHOT_SEARCHES = 10;
+    private final static int SNAPSHOT_DEPTH = 20;
+    private final static long SNAPSHOT_KEY = 0x123456789abcdefL;
+
+    /**
+     * time allocating and clearing the transposition table at 1, 8 and 32 GB,
+     * first on a single thread and then with one slice per available processor.
+     * Sizes which don't fit in the heap are reported and skipped, so run with
+     * -Xmx set above the largest size to be measured
+     */
+    public static void test() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        int[] threadCounts = processors > 1 ? new int[] { 1, processors } : new int[] { 1 };
+        for(int sizeInMB : SIZE_IN_MB) {
+            for(int threads : threadCounts) {
+                ExecutorService pool = Executors.newFixedThreadPool(threads);
+                try {
+                    long startTime = System.nanoTime();
+                    TTable tTable = new TTable(sizeInMB, pool, threads);
+                    long allocateTime = System.nanoTime() - startTime;
+                    startTime = System.nanoTime();
+                    tTable.clear(pool, threads);
+                    long clearTime = System.nanoTime() - startTime;
+                    println(sizeInMB + " MB threads " + threads + " allocate " + allocateTime / 1000000 + " ms clear " + clearTime / 1000000 + " ms");
+                } catch(OutOfMemoryError e) {
+                    println(sizeInMB + " MB threads " + threads + " skipped, not enough heap");
+                } finally {
+                    pool.shutdown();
+                }
+            }
+        }
+    }
+
+    /**
+     * compare the heap and off heap tables at 16 GB, reporting the average time
+     * of a probe on a table filled with random entries and the time spent in a
+     * full garbage collection while the table is live. Run with -Xmx and
+     * -XX:MaxDirectMemorySize set above the table size
+     */
+    public static void compare() {
+        compare(COMPARE_SIZE_IN_MB, "");
+    }
+
+    public static void compare(int sizeInMB, String hashFile) {
+        TranspositionTable tTable = null;
+        try {
+            tTable = new TTable(sizeInMB);
+            compare("heap", tTable);
+        } catch(OutOfMemoryError e) {
+            println("heap " + sizeInMB + " MB skipped, not enough heap");
+        }
+        tTable = null;
+        try {
+            tTable = new TTableOffHeap(sizeInMB, hashFile, null, 1);
+            compare(hashFile.isEmpty() ? "off heap" : "mapped " + hashFile, tTable);
+        } catch(OutOfMemoryError | RuntimeException e) {
+            println("off heap " + sizeInMB + " MB skipped, " + e.getMessage());
+        }
+    }
+
+    /**
+     * check that a deep entry loaded from a snapshot isn't the first to be
+     * replaced. A table several searches old stores a deep entry and is saved,
+     * then a fresh table loads it, starts a search and stores shallow entries
+     * into the same bucket. The loaded entry keeps its age from when it was
+     * saved, one search old after the new search, so it outlives the shallow
+     * entries rather than looking dozens of searches old
+     *
+     * @return true if the deep entry survived in the heap and off heap tables
+     */
+    public static boolean snapshot() {
+        boolean survived = true;
+        File file = null;
+        try {
+            file = File.createTempFile("minchessv0", ".hash");
+            for(int offHeap = 0; offHeap < 2; offHeap ++) {
+                TranspositionTable saved = offHeap == 0 ? new TTable(SNAPSHOT_SIZE_IN_MB) : new TTableOffHeap(SNAPSHOT_SIZE_IN_MB, "", null, 1);
+                for(int search = 0; search < SNAPSHOT_SEARCHES; search ++) {
+                    saved.newSearch();
+                }
+                saved.save(SNAPSHOT_KEY, 100, SNAPSHOT_DEPTH, TTable.EXACT, 0L);
+                TTableFile.save(saved, file.getPath());
+                TranspositionTable loaded = offHeap == 0 ? new TTable(SNAPSHOT_SIZE_IN_MB) : new TTableOffHeap(SNAPSHOT_SIZE_IN_MB, "", null, 1);
+                TTableFile.load(loaded, file.getPath(), null, 1);
+                loaded.newSearch();
+                // keys differing only above the bucket bits share the deep entry's bucket
+                for(long i = 1; i <= 8; i ++) {
+                    loaded.save(SNAPSHOT_KEY + (i << 48), 0, 1, TTable.ALPHA, 0L);
+                }
+                boolean kept = TTable.depth(loaded.probe(SNAPSHOT_KEY)) == SNAPSHOT_DEPTH;
+                if(!kept) survived = false;
+                println((offHeap == 0 ? "heap" : "off heap") + " loaded deep entry " + (kept ? "kept" : "REPLACED"));
+            }
+        } catch(IOException e) {
+            println("Snapshot failed: " + e.getMessage());
+            survived = false;
+        } finally {
+            if(file != null) file.delete();
+        }
+        return survived;
+    }
+
+    private TTableTest() {}
+
+    private static void compare(String name, TranspositionTable tTable) {
+        long key = 0x9e3779b97f4a7c15L;
+        for(int i = 0; i < COMPARE_OPERATIONS; i ++) {
+            key = nextKey(key);
+            tTable.save(key, i & 0xffff, i & 63, TTable.EXACT, i & 0xffffff);
+        }
+        long checksum = 0L;
+        long startTime = System.nanoTime();
+        key = 0x9e3779b97f4a7c15L;
+        for(int i = 0; i < COMPARE_OPERATIONS; i ++) {
+            key = nextKey(key);
+            checksum += tTable.probe((i & 1) == 0 ? key : ~key);
+        }
+        long probeTime = System.nanoTime() - startTime;
+        long gcTime = gcTime();
+        startTime = System.nanoTime();
+        System.gc();
+        long gcWallTime = System.nanoTime() - startTime;
+        gcTime = gcTime() - gcTime;
+        println(name + " " + tTable.sizeInMB() + " MB probe " + (probeTime / COMPARE_OPERATIONS) + " ns full gc " + gcTime + " ms (" + gcWallTime / 1000000 + " ms wall) checksum " + checksum);
+    }
+
+    private static long nextKey(long key) {
+        key ^= key << 13;
+        key ^= key >>> 7;
+        return key ^ (key << 17);
+    }
+
+    private static long gcTime() {
+        long gcTime = 0L;
+        for(GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcTime += Math.max(0L, bean.getCollectionTime());
+        }
+        return gcTime;
+    }
+
+    private static void println(String text) {
+        System.out.println(text);
+    }
+
+}
@@ -0,0 +1,113 @@
+package minchessv0.test;
+
+import minchessv0.board.Board;
+import minchessv0.move.Move;
+import minchessv0.search.SearchParallel;
+import minchessv0.util.TTable;
+
+public class TacticsTest {
+
+    private final static String[] POSITION_EPD = {
+        "r1bqkb1r/pppp1ppp/2n2n2/4p2Q/2B1P3/8/PPPP1PPP/RNB1K1NR w KQkq - bm Qxf7#; id \"mate.001\";",
+        "6k1/5ppp/8/8/8/8/5PPP/3R2K1 w - - bm Rd8#; id \"mate.002\";",
+        "2rr3k/pp3pp1/1nnqbN1p/3pN3/2pP4/2P3Q1/PPB4P/R4RK1 w - - bm Qg6; id \"WAC.001\";",
+        "8/7p/5k2/5p2/p1p2P2/Pr1pPK2/1P1R3P/8 b - - bm Rxb2; id \"WAC.002\";",
+        "5rk1/1ppb3p/p1pb4/6q1/3P1p1r/2P1R2P/PP1BQ1P1/5RKN w - - bm Rg3; id \"WAC.003\";",
+        "r1bq2rk/pp3pbp/2p1p1pQ/7P/3P4/2PB1N2/PP3PPR/2KR4 w - - bm Qxh7+; id \"WAC.004\";",
+        "5k2/6pp/p1qN4/1p1p4/3P4/2PKP2Q/PP3r2/3R4 b - - bm Qc4+; id \"WAC.005\";",
+        "7k/p7/1R5K/6r1/6p1/6P1/8/8 w - - bm Rb7; id \"WAC.006\";",
+        "rnbqkb1r/pppp1ppp/8/4P3/6n1/7P/PPPNPPP1/R1BQKBNR b KQkq - bm Ne3; id \"WAC.007\";",
+        "r4q1k/p2bR1rp/2p2Q1N/5p2/5p2/2P5/PP3PPP/R5K1 w - - bm Rf7; id \"WAC.008\";",
+        "3q1rk1/p4pp1/2pb3p/3p4/6Pr/1PNQ4/P1PB1PP1/4RRK1 b - - bm Bh2+; id \"WAC.009\";",
+        "2br2k1/2q3rn/p2NppQ1/2p1P3/Pp5R/4P3/1P3PPP/3R2K1 w - - bm Rxh7; id \"WAC.010\";"
+    };
+
+    private final static int MAX_DEPTH = 10;
+
+    /**
+     * search a set of mate and tactics positions in EPD form and report the depth,
+     * nodes and time each took to find the best move. Each position is searched
+     * to one more ply at a time with a single thread, sharing a transposition
+     * table, as iterative deepening would. A position is solved at the depth from
+     * which the best move of every search up to the maximum depth is one of the
+     * position's best moves, so a move found by chance at a shallow depth and
+     * then dropped doesn't count, and the time to solve is the time taken up to
+     * that depth
+     */
+    public static void test() {
+        test(MAX_DEPTH);
+    }
+
+    /**
+     * @param maxDepth the deepest search for each position
+     * @return the number of positions solved
+     */
+    public static int test(int maxDepth) {
+        int solved = 0;
+        long totalSolveTime = 0L;
+        long startTime = System.currentTimeMillis();
+        for(String epd : POSITION_EPD) {
+            String[] fields = epd.split(" ");
+            long[] board = Board.fromFen(fields[0] + " " + fields[1] + " " + fields[2] + " " + fields[3] + " 0 1");
+            String bestMoves = operand(epd, "bm");
+            TTable tTable = TestSearch.newTable();
+            long nodes = 0L;
+            long elapsed = 0L;
+            int solvedDepth = 0;
+            long solveNodes = 0L;
+            long solveTime = 0L;
+            String move = "";
+            for(int depth = 1; depth <= maxDepth; depth ++) {
+                SearchParallel search = TestSearch.create(board, depth, tTable);
+                long searchStartTime = System.currentTimeMillis();
+                search.run();
+                elapsed += System.currentTimeMillis() - searchStartTime;
+                nodes += search.nodes();
+                move = stripCheck(Move.notation(board, search.bestMove()));
+                if(!isBestMove(bestMoves, move)) {
+                    solvedDepth = 0;
+                } else if(solvedDepth == 0) {
+                    solvedDepth = depth;
+                    solveNodes = nodes;
+                    solveTime = elapsed;
+                }
+            }
+            if(solvedDepth > 0) {
+                solved ++;
+                totalSolveTime += solveTime;
+            }
+            println(operand(epd, "id").replace("\"", "") + " bm " + bestMoves + " found " + move + (solvedDepth > 0 ? " solved at depth " + solvedDepth + " nodes " + solveNodes + " time " + solveTime : " not solved") + " total nodes " + nodes + " Elapsed: " + elapsed);
+        }
+        println("Solved " + solved + " of " + POSITION_EPD.length + " solve time " + totalSolveTime + " Elapsed: " + (System.currentTimeMillis() - startTime));
+        return solved;
+    }
+
+    private TacticsTest() {}
+
+    /**
+     * the operand of an EPD opcode, the text between the opcode and the
+     * semicolon which ends it
+     */
+    private static String operand(String epd, String opcode) {
+        int start = epd.indexOf(" " + opcode + " ");
+        if(start < 0) return "";
+        start += opcode.length() + 2;
+        return epd.substring(start, epd.indexOf(';', start)).trim();
+    }
+
+    private static boolean isBestMove(String bestMoves, String move) {
+        for(String bestMove : bestMoves.split(" ")) {
+            if(stripCheck(bestMove).equals(move)) return true;
+        }
+        return false;
+    }
+
+    private static String stripCheck(String move) {
+        return move.replace("+", "").replace("#", "");
+    }
+
+    private static void println(String text) {
+        System.out.println(text);
+    }
+
+}
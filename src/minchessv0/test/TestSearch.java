@@ -0,0 +1,47 @@
+package minchessv0.test;
+
+import minchessv0.search.SearchParallel;
+import minchessv0.util.TTable;
+import minchessv0.util.TranspositionTable;
+
+/**
+ * the search the test harnesses run, single threaded and outside the UCI loop so
+ * that it reports nothing, in one place so that the harnesses set it up the same
+ * way. A search is created rather than run so a harness can configure it, time
+ * it or run it on another thread
+ */
+public class TestSearch {
+
+    public final static int HASH_SIZE_IN_MB = 16;
+
+    /**
+     * a search with no time limit and its own empty table
+     */
+    public static SearchParallel create(long[] board, int depth) {
+        return create(board, depth, Long.MAX_VALUE, newTable());
+    }
+
+    /**
+     * a search with no time limit sharing a table, such as one kept between the
+     * moves of a game
+     */
+    public static SearchParallel create(long[] board, int depth, TranspositionTable tTable) {
+        return create(board, depth, Long.MAX_VALUE, tTable);
+    }
+
+    public static SearchParallel create(long[] board, int depth, long searchTime, TranspositionTable tTable) {
+        SearchParallel search = new SearchParallel(board, depth, searchTime, tTable, null, 1);
+        search.setUCI(false);
+        return search;
+    }
+
+    /**
+     * an empty table of the size the harnesses search with
+     */
+    public static TTable newTable() {
+        return new TTable(HASH_SIZE_IN_MB);
+    }
+
+    private TestSearch() {}
+
+}
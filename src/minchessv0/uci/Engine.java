@@ -38,6 +38,10 @@ public class Engine implements Runnable {
                         handleStop();
                         break;
                     }
+                    case "ponderhit": {
+                        handlePonderHit();
+                        break;
+                    }
                     case "quit": {
                         handleQuit();
                         break;
@@ -58,10 +62,30 @@ public class Engine implements Runnable {
                         handleUCINewGame();
                         break;
                     }
+                    case "savehash": {
+                        handleSaveHash();
+                        break;
+                    }
+                    case "loadhash": {
+                        handleLoadHash();
+                        break;
+                    }
+                    case "setoption": {
+                        handleSetOption();
+                        break;
+                    }
                     case "draw": {
                         Game.INSTANCE.sendCommand("draw");
                         break;
                     }
+                    case "bench": {
+                        handleBench();
+                        break;
+                    }
+                    case "stats": {
+                        handleStats();
+                        break;
+                    }
                     default: break;
                 }
             }
@@ -118,6 +142,7 @@ public class Engine implements Runnable {
 
     private void handleGo(String command) {
         String token;
+        boolean searchMoves = false;
         while(!(token = getNextToken()).isEmpty()) {
             switch(token) {
                 case "depth": {
@@ -140,7 +165,34 @@ public class Engine implements Runnable {
                     Game.INSTANCE.sendCommand("btime", getNextToken());
                     break;
                 }
-                default: break;
+                case "ponder": {
+                    Game.INSTANCE.sendCommand("ponder");
+                    break;
+                }
+                case "nodes": {
+                    Game.INSTANCE.sendCommand("nodes", getNextToken());
+                    break;
+                }
+                case "mate": {
+                    Game.INSTANCE.sendCommand("mate", getNextToken());
+                    break;
+                }
+                case "searchmoves": {
+                    searchMoves = true;
+                    break;
+                }
+                case "winc":
+                case "binc":
+                case "movestogo": {
+                    // not used, skip the value so it isn't taken for a search move
+                    getNextToken();
+                    break;
+                }
+                default: {
+                    // the moves after searchmoves, up to the next keyword
+                    if(searchMoves) Game.INSTANCE.sendCommand("searchmove", token);
+                    break;
+                }
             }
         }
         Game.INSTANCE.sendCommand("search");
@@ -150,6 +202,10 @@ public class Engine implements Runnable {
         Game.INSTANCE.sendCommand("stop");
     }
 
+    private void handlePonderHit() {
+        Game.INSTANCE.sendCommand("ponderhit");
+    }
+
     private void handleQuit() {
         Game.INSTANCE.sendCommand("quit");
     }
@@ -170,4 +226,78 @@ public class Engine implements Runnable {
         Game.INSTANCE.sendCommand("ucinewgame");
     }
 
+    private void handleSaveHash() {
+        Game.INSTANCE.sendCommand("savehash", getNextToken());
+    }
+
+    private void handleLoadHash() {
+        Game.INSTANCE.sendCommand("loadhash", getNextToken());
+    }
+
+    private void handleBench() {
+        Game.INSTANCE.sendCommand("bench", getNextToken());
+    }
+
+    private void handleStats() {
+        Game.INSTANCE.sendCommand("stats");
+    }
+
+    private void handleSetOption() {
+        String token;
+        String name = "";
+        String value = "";
+        boolean readingValue = false;
+        while(!(token = getNextToken()).isEmpty()) {
+            switch(token) {
+                case "name": {
+                    readingValue = false;
+                    break;
+                }
+                case "value": {
+                    readingValue = true;
+                    break;
+                }
+                default: {
+                    if(readingValue) {
+                        value += (value.isEmpty() ? "" : " ") + token;
+                    } else {
+                        name += (name.isEmpty() ? "" : " ") + token;
+                    }
+                    break;
+                }
+            }
+        }
+        switch(name.toLowerCase()) {
+            case "hash": {
+                Game.INSTANCE.sendCommand("hash", value);
+                break;
+            }
+            case "threads": {
+                Game.INSTANCE.sendCommand("threads", value);
+                break;
+            }
+            case "clear hash": {
+                Game.INSTANCE.sendCommand("clearhash");
+                break;
+            }
+            case "multipv": {
+                Game.INSTANCE.sendCommand("multipv", value);
+                break;
+            }
+            case "hash memory": {
+                Game.INSTANCE.sendCommand("hashmemory", value);
+                break;
+            }
+            case "hash file": {
+                Game.INSTANCE.sendCommand("hashfile", value);
+                break;
+            }
+            case "trace file": {
+                Game.INSTANCE.sendCommand("tracefile", value);
+                break;
+            }
+            default: break;
+        }
+    }
+
 }
@@ -58,6 +58,7 @@ public class B {
 	public final static int PAWN_ADVANCE_2_PLAYER1 = 53;
 	public final static int RANK_FILE_ATTACKS = 54;
 	public final static int DIAGONAL_ATTACKS = 55;
+	public final static int BETWEEN = 56;
 
 	public final static long[][] BB;
 
@@ -373,6 +374,26 @@ public class B {
 		BB[DIAGONAL_ATTACKS] = new long[BB_DIAGONALATTACKS.length];
 		System.arraycopy(BB_DIAGONALATTACKS, 0, BB[DIAGONAL_ATTACKS], 0, BB_DIAGONALATTACKS.length);
 		//BB[DIAGONAL_ATTACKS] = Arrays.copyOf(BB_DIAGONALATTACKS, BB_DIAGONALATTACKS.length);
+		/*
+		 * the squares strictly between two squares on the same rank, file or diagonal,
+		 * indexed by s | (t << 6), empty if the squares aren't on a line or are next
+		 * to each other. Used to find the squares which block a check
+		 */
+		BB[BETWEEN] = new long[64*64];
+		for(int s = 0; s < 64; s ++) {
+			for(int t = 0; t < 64; t ++) {
+				int rankStep = Integer.signum((t >>> 3) - (s >>> 3));
+				int fileStep = Integer.signum((t & 7) - (s & 7));
+				int rankDistance = Math.abs((t >>> 3) - (s >>> 3));
+				int fileDistance = Math.abs((t & 7) - (s & 7));
+				if(s == t || (rankDistance != 0 && fileDistance != 0 && rankDistance != fileDistance)) continue;
+				long mask = 0L;
+				for(int i = s + rankStep * 8 + fileStep; i != t; i += rankStep * 8 + fileStep) {
+					mask |= (1L << i);
+				}
+				BB[BETWEEN][s | (t << 6)] = mask;
+			}
+		}
     }
 
 	public static void drawBitboard(long bitboard) {
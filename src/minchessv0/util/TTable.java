@@ -1,85 +1,380 @@
 package minchessv0.util;
 
-public class TTable {
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
 
-    public static class TTEntry {
+public class TTable implements TranspositionTable {
 
-        public TTEntry() {
-            this.type = INVALID;
-        }
+    public static final int NONE = 0;
+    public static final int EXACT = 1;
+    public static final int ALPHA = 2;
+    public static final int BETA = 3;
 
-        public TTEntry(long key, int eval, int depth, int type, long hashMove) {
-            this.key = key;
-            this.eval = eval;
-            this.depth = depth;
-            this.type = type;
-            this.hashMove = hashMove;
-        }
+    public static final int DEFAULT_TABLE_SIZE_IN_MB = 128;
+    public static final int MIN_TABLE_SIZE_IN_MB = 1;
+    public static final int MAX_TABLE_SIZE_IN_MB = 65536;
 
-        public int eval() {
-            return this.eval;
-        }
+    /**
+     * decode the hash move from a probed entry
+     *
+     * @param entry the entry returned by probe
+     * @return the hash move, or 0 if none was stored
+     */
+    public static long move(long entry) {
+        return entry & MOVE_BITS;
+    }
 
-        public int depth() {
-            return this.depth;
+    /**
+     * decode the search depth from a probed entry
+     *
+     * @param entry the entry returned by probe
+     * @return the depth the entry was searched to
+     */
+    public static int depth(long entry) {
+        return (int) (entry >>> DEPTH_SHIFT) & DEPTH_BITS;
+    }
+
+    /**
+     * decode the eval from a probed entry
+     *
+     * @param entry the entry returned by probe
+     * @return the eval stored in the entry
+     */
+    public static int eval(long entry) {
+        return (int) (entry << (64 - EVAL_SHIFT - EVAL_LENGTH) >> (64 - EVAL_LENGTH));
+    }
+
+    /**
+     * decode the bound type from a probed entry
+     *
+     * @param entry the entry returned by probe
+     * @return EXACT, ALPHA or BETA, or NONE if the probe missed
+     */
+    public static int type(long entry) {
+        return (int) (entry >>> TYPE_SHIFT) & TYPE_BITS;
+    }
+
+    /**
+     * decode the generation, the search the entry was last written in
+     *
+     * @param entry the entry returned by probe
+     * @return the generation of the entry
+     */
+    public static int generation(long entry) {
+        return (int) (entry >>> GENERATION_SHIFT) & GENERATION_BITS;
+    }
+
+    public TTable() {
+        this(DEFAULT_TABLE_SIZE_IN_MB);
+    }
+
+    public TTable(int sizeInMB) {
+        resize(sizeInMB);
+    }
+
+    public TTable(int sizeInMB, ExecutorService pool, int threads) {
+        resize(sizeInMB, pool, threads);
+    }
+
+    /**
+     * look up a position in the table. The key selects a bucket of four entries,
+     * which together fill one 64 byte cache line. Each entry is stored as two
+     * longs, the key xor'd with the data followed by the data, so an entry torn by
+     * another thread writing at the same time fails the key check instead of
+     * returning corrupt data
+     *
+     * @param key the zobrist key of the position
+     * @return the packed entry, or 0 if there is no entry for this key
+     */
+    @Override
+    public long probe(long key) {
+        long slot = (key & this.bucketMask) << BUCKET_SHIFT;
+        long[] chunk = this.table[(int) (slot >>> CHUNK_SHIFT)];
+        int offset = (int) slot & CHUNK_MASK;
+        long data;
+        for(int i = offset; i < offset + BUCKET_LENGTH; i += 2) {
+            data = chunk[i + 1];
+            if((chunk[i] ^ data) == key) return data;
         }
+        return 0L;
+    }
 
-        public int type() {
-            return this.type;
+    /**
+     * store an entry in the key's bucket. An existing entry for the same key is
+     * overwritten unless it is from this search and much deeper than the new one,
+     * and keeps its hash move if the new entry doesn't have one. Otherwise the
+     * entry with the lowest depth minus its age is replaced, so entries left over
+     * from earlier searches are replaced before deep entries from this one
+     */
+    @Override
+    public void save(long key, int eval, int depth, int type, long move) {
+        long slot = (key & this.bucketMask) << BUCKET_SHIFT;
+        long[] chunk = this.table[(int) (slot >>> CHUNK_SHIFT)];
+        int offset = (int) slot & CHUNK_MASK;
+        int replace = offset;
+        int replaceValue = Integer.MAX_VALUE;
+        long data;
+        int value;
+        for(int i = offset; i < offset + BUCKET_LENGTH; i += 2) {
+            data = chunk[i + 1];
+            if(data == 0L) {
+                if(replaceValue != Integer.MIN_VALUE) {
+                    replace = i;
+                    replaceValue = Integer.MIN_VALUE;
+                }
+                continue;
+            }
+            if((chunk[i] ^ data) == key) {
+                if(keepExisting(data, depth, type, this.generation)) return;
+                if(move == 0L) move = move(data);
+                replace = i;
+                break;
+            }
+            value = replaceValue(data, this.generation);
+            if(value < replaceValue) {
+                replace = i;
+                replaceValue = value;
+            }
         }
+        data = pack(eval, depth, type, move, this.generation);
+        chunk[replace] = key ^ data;
+        chunk[replace + 1] = data;
+    }
+
+    /**
+     * start a new search, entries written from now on are newer than any entry
+     * already in the table
+     */
+    @Override
+    public void newSearch() {
+        this.generation = (this.generation + 1) & GENERATION_BITS;
+    }
 
-        public long hashMove() {
-            return this.hashMove;
+    @Override
+    public int generation() {
+        return this.generation;
+    }
+
+    /**
+     * set the generation of the search, used when loading a snapshot so that the
+     * loaded entries are as old as they were when it was saved
+     */
+    @Override
+    public void setGeneration(int generation) {
+        this.generation = generation & GENERATION_BITS;
+    }
+
+    /**
+     * estimate how full the table is from a sample of the first thousand entries
+     *
+     * @return the number of entries per thousand written in the current search
+     */
+    @Override
+    public int hashfull() {
+        long[] chunk = this.table[0];
+        int sampleLength = Math.min(HASHFULL_SAMPLE_SIZE << 1, chunk.length);
+        int used = 0;
+        long data;
+        for(int i = 0; i < sampleLength; i += 2) {
+            data = chunk[i + 1];
+            if(data != 0L && generation(data) == this.generation) used ++;
         }
+        return used * 2000 / sampleLength;
+    }
 
-        private static final int INVALID = -1;
-        private static final int EXACT = 0;
-        private static final int ALPHA = 1;
-        private static final int BETA = 2;
+    public void resize(int sizeInMB) {
+        resize(sizeInMB, null, 1);
+    }
 
-        private long key;
-        private int eval;
-        private int depth;
-        private int type;
-        private long hashMove;
+    /**
+     * reallocate the table to a new size, any entries are discarded. The size is
+     * rounded down to a power of two number of entries. The chunks are allocated
+     * in slices by the threads of the search pool, the allocating thread zeroes
+     * the chunk so its pages are first touched by a search thread rather than all
+     * landing on the memory node of the thread that handled the UCI command. The
+     * new table is only swapped in once it is allocated, so if there isn't the
+     * memory for it the OutOfMemoryError is thrown and the old table is kept
+     *
+     * @param sizeInMB the new size of the table in megabytes
+     * @param pool     the search thread pool, or null to allocate on this thread
+     * @param threads  the number of threads in the pool
+     */
+    @Override
+    public void resize(int sizeInMB, ExecutorService pool, int threads) {
+        sizeInMB = Math.max(MIN_TABLE_SIZE_IN_MB, Math.min(MAX_TABLE_SIZE_IN_MB, sizeInMB));
+        long entries = entries(sizeInMB);
+        long longs = entries << 1;
+        int chunkLength = (int) Math.min(longs, 1L << CHUNK_SHIFT);
+        long[][] table = new long[(int) (longs / chunkLength)][];
+        int slices = Math.max(1, Math.min(threads, table.length));
+        runSlices(pool, slices, slice -> {
+            for(int i = slice; i < table.length; i += slices) {
+                table[i] = new long[chunkLength];
+            }
+        });
+        this.mask = entries - 1;
+        this.bucketMask = (entries >>> 2) - 1;
+        this.sizeInMB = sizeInMB;
+        this.table = table;
+    }
 
+    public void clear() {
+        clear(null, 1);
     }
 
-    public TTable() {
-        this(DEFAULT_TABLE_SIZE_IN_MB);
+    /**
+     * zero every entry in the table. The chunks are split into one slice per
+     * search thread and each slice is zeroed concurrently on the search pool, so
+     * clearing a multi gigabyte table doesn't stall the game clock. Every search
+     * thread probes the whole table, so the aim is to spread the pages evenly over
+     * the threads rather than to give each thread its own slice
+     *
+     * @param pool    the search thread pool, or null to clear on this thread
+     * @param threads the number of threads in the pool
+     */
+    @Override
+    public void clear(ExecutorService pool, int threads) {
+        long[][] table = this.table;
+        int slices = Math.max(1, Math.min(threads, table.length));
+        runSlices(pool, slices, slice -> {
+            for(int i = slice; i < table.length; i += slices) {
+                Arrays.fill(table[i], 0L);
+            }
+        });
     }
 
-    public TTable(int sizeInMB) {
-        long totalBytes = (long) sizeInMB * 1024 * 1024;
-        int entries = (int) (totalBytes / ENTRY_SIZE_IN_BYTES);
-        this.tableSize = calculateTableSize(entries);
-        this.table = new TTEntry[this.tableSize];
+    @Override
+    public int sizeInMB() {
+        return this.sizeInMB;
     }
 
-    public TTEntry probe(long key) {
-        int index = (int) key & this.tableSize;
-        TTEntry entry = this.table[index];
-        return entry.key == key ? entry : new TTEntry();
+    /**
+     * the length of the table in longs, two per entry
+     */
+    @Override
+    public long length() {
+        return (this.mask + 1) << 1;
+    }
+
+    /**
+     * copy the raw table starting at a long index into a buffer until the buffer
+     * is full, used for saving snapshots of the table
+     */
+    @Override
+    public void copyTo(long index, LongBuffer buffer) {
+        while(buffer.hasRemaining()) {
+            long[] chunk = this.table[(int) (index >>> CHUNK_SHIFT)];
+            int offset = (int) index & CHUNK_MASK;
+            int length = Math.min(buffer.remaining(), chunk.length - offset);
+            buffer.put(chunk, offset, length);
+            index += length;
+        }
     }
 
-    public void save(long key, int eval, int depth, int type, long hashKey) {
-        int index = (int) key & this.tableSize;
-        TTEntry entry = this.table[index];
-        if(entry == null || entry.depth <= depth) {
-            this.table[index] = new TTEntry(key, eval, depth, type, hashKey);
+    /**
+     * copy the contents of a buffer into the raw table starting at a long index,
+     * used for loading snapshots of the table
+     */
+    @Override
+    public void copyFrom(long index, LongBuffer buffer) {
+        while(buffer.hasRemaining()) {
+            long[] chunk = this.table[(int) (index >>> CHUNK_SHIFT)];
+            int offset = (int) index & CHUNK_MASK;
+            int length = Math.min(buffer.remaining(), chunk.length - offset);
+            buffer.get(chunk, offset, length);
+            index += length;
         }
     }
 
-    private static final int ENTRY_SIZE_IN_BYTES = 28;
-    private static final int DEFAULT_TABLE_SIZE_IN_MB = 128;
+    private static final int ENTRY_SIZE_IN_BYTES = 16;
+    private static final int CHUNK_SHIFT = 23;
+    private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+    private static final long MOVE_BITS = 0xffffffL;
+    private static final int DEPTH_SHIFT = 24;
+    private static final int DEPTH_BITS = 0xff;
+    private static final int EVAL_SHIFT = 32;
+    private static final int EVAL_LENGTH = 24;
+    private static final long EVAL_BITS = (1L << EVAL_LENGTH) - 1;
+    private static final int TYPE_SHIFT = 56;
+    private static final int TYPE_BITS = 0b11;
+    private static final int GENERATION_SHIFT = 58;
+    static final int GENERATION_BITS = 0b111111;
+    private static final int BUCKET_SHIFT = 3;
+    private static final int BUCKET_LENGTH = 1 << BUCKET_SHIFT;
+    private static final int AGE_WEIGHT = 8;
+    private static final int SAME_KEY_DEPTH_MARGIN = 2;
+    static final int HASHFULL_SAMPLE_SIZE = 1000;
 
-    private int tableSize;
-    private TTEntry[] table;
+    private long[][] table;
+    private long mask;
+    private long bucketMask;
+    private int sizeInMB;
+    private int generation;
 
-    private int calculateTableSize(int minEntries) {
-        int n = 1;
-        while((1 << n) - 1 < minEntries) n ++;
-        return (1 << n) - 1;
-    }  
+    /**
+     * pack an entry into the single long stored alongside the key, this layout is
+     * shared by every TranspositionTable implementation
+     */
+    static long pack(int eval, int depth, int type, long move, int generation) {
+        return (move & MOVE_BITS)
+             | ((long) (depth & DEPTH_BITS) << DEPTH_SHIFT)
+             | (((long) eval & EVAL_BITS) << EVAL_SHIFT)
+             | ((long) (type & TYPE_BITS) << TYPE_SHIFT)
+             | ((long) (generation & GENERATION_BITS) << GENERATION_SHIFT);
+    }
+
+    /**
+     * whether an entry for the same key should be kept rather than overwritten, a
+     * deeper entry from this search is worth more than a shallow bound
+     */
+    static boolean keepExisting(long data, int depth, int type, int generation) {
+        return type != EXACT && depth + SAME_KEY_DEPTH_MARGIN < depth(data) && generation(data) == generation;
+    }
+
+    /**
+     * how much an entry is worth keeping when choosing which entry in a bucket to
+     * replace, its depth minus a penalty for each search since it was written
+     */
+    static int replaceValue(long data, int generation) {
+        return depth(data) - AGE_WEIGHT * ((generation - generation(data)) & GENERATION_BITS);
+    }
+
+    /**
+     * the number of entries in a table of this size, rounded down to a power of
+     * two
+     */
+    static long entries(int sizeInMB) {
+        return Long.highestOneBit((long) sizeInMB * 1024 * 1024 / ENTRY_SIZE_IN_BYTES);
+    }
+
+    static void runSlices(ExecutorService pool, int slices, IntConsumer task) {
+        if(pool == null || slices == 1) {
+            for(int slice = 0; slice < slices; slice ++) {
+                task.accept(slice);
+            }
+            return;
+        }
+        List<Future<?>> futures = new ArrayList<>();
+        for(int i = 0; i < slices; i ++) {
+            final int slice = i;
+            futures.add(pool.submit(() -> task.accept(slice)));
+        }
+        for(Future<?> future : futures) {
+            try {
+                future.get();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch(ExecutionException e) {
+                if(e.getCause() instanceof Error) throw (Error) e.getCause();
+                throw new RuntimeException(e.getCause());
+            }
+        }
+    }
 
 }
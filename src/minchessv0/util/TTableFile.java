@@ -0,0 +1,109 @@
+package minchessv0.util;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Save and load snapshots of a transposition table, so that a long analysis
+ * can be resumed in a new process without rebuilding the table. A snapshot is a
+ * header followed by the raw table, both streamed through memory mapped windows
+ * of the file. The header holds a version, which changes whenever the entry
+ * layout changes, and a checksum of the zobrist keys, since entries are useless
+ * to a build whose keys are different. The table's generation is saved too and
+ * restored on loading, so the loaded entries keep their age relative to the
+ * searches that follow rather than all looking many searches old
+ */
+public class TTableFile {
+
+    public static final int VERSION = 3;
+
+    /**
+     * write a snapshot of a table to a file, replacing the file if it exists
+     *
+     * @param tTable   the table to save
+     * @param fileName the name of the snapshot file
+     * @throws IOException if the file can't be written
+     */
+    public static void save(TranspositionTable tTable, String fileName) throws IOException {
+        long length = tTable.length();
+        try(RandomAccessFile file = new RandomAccessFile(fileName, "rw"); FileChannel channel = file.getChannel()) {
+            channel.truncate(0L);
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0L, HEADER_SIZE_IN_BYTES);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            header.putLong(MAGIC_OFFSET, MAGIC);
+            header.putInt(VERSION_OFFSET, VERSION);
+            header.putInt(SIZE_OFFSET, tTable.sizeInMB());
+            header.putLong(CHECKSUM_OFFSET, Zobrist.checksum());
+            header.putLong(LENGTH_OFFSET, length);
+            header.putInt(GENERATION_OFFSET, tTable.generation());
+            for(long index = 0; index < length; index += WINDOW_LENGTH) {
+                int windowLength = (int) Math.min(WINDOW_LENGTH, length - index);
+                LongBuffer window = map(channel, FileChannel.MapMode.READ_WRITE, index, windowLength);
+                tTable.copyTo(index, window);
+            }
+            header.force();
+        }
+    }
+
+    /**
+     * load a snapshot into a table. The table is resized to the size it was saved
+     * at, since an entry's position depends on the number of entries
+     *
+     * @param tTable   the table to load into
+     * @param fileName the name of the snapshot file
+     * @param pool     the search thread pool used to reallocate the table
+     * @param threads  the number of threads in the pool
+     * @throws IOException if the file can't be read, isn't a snapshot for this
+     *                     build or there isn't the memory to resize the table,
+     *                     which is then left as it was
+     */
+    public static void load(TranspositionTable tTable, String fileName, ExecutorService pool, int threads) throws IOException {
+        try(RandomAccessFile file = new RandomAccessFile(fileName, "r"); FileChannel channel = file.getChannel()) {
+            if(channel.size() < HEADER_SIZE_IN_BYTES) throw new IOException(fileName + " is not a hash file");
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0L, HEADER_SIZE_IN_BYTES);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if(header.getLong(MAGIC_OFFSET) != MAGIC) throw new IOException(fileName + " is not a hash file");
+            if(header.getInt(VERSION_OFFSET) != VERSION) throw new IOException(fileName + " is hash file version " + header.getInt(VERSION_OFFSET) + ", expected " + VERSION);
+            if(header.getLong(CHECKSUM_OFFSET) != Zobrist.checksum()) throw new IOException(fileName + " was saved with different zobrist keys");
+            int sizeInMB = header.getInt(SIZE_OFFSET);
+            long length = header.getLong(LENGTH_OFFSET);
+            if(channel.size() < HEADER_SIZE_IN_BYTES + (length << 3)) throw new IOException(fileName + " is truncated");
+            if(tTable.sizeInMB() != sizeInMB || tTable.length() != length) {
+                try {
+                    tTable.resize(sizeInMB, pool, threads);
+                } catch(OutOfMemoryError e) {
+                    throw new IOException("not enough memory for the " + sizeInMB + " MB table of " + fileName);
+                }
+            }
+            if(tTable.length() != length) throw new IOException(fileName + " doesn't match the table layout");
+            for(long index = 0; index < length; index += WINDOW_LENGTH) {
+                int windowLength = (int) Math.min(WINDOW_LENGTH, length - index);
+                LongBuffer window = map(channel, FileChannel.MapMode.READ_ONLY, index, windowLength);
+                tTable.copyFrom(index, window);
+            }
+            tTable.setGeneration(header.getInt(GENERATION_OFFSET));
+        }
+    }
+
+    private static final long MAGIC = 0x485341484e494d00L;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 8;
+    private static final int SIZE_OFFSET = 12;
+    private static final int CHECKSUM_OFFSET = 16;
+    private static final int LENGTH_OFFSET = 24;
+    private static final int GENERATION_OFFSET = 32;
+    private static final int HEADER_SIZE_IN_BYTES = 64;
+    private static final int WINDOW_LENGTH = 1 << 23;
+
+    private TTableFile() {}
+
+    private static LongBuffer map(FileChannel channel, FileChannel.MapMode mode, long index, int length) throws IOException {
+        return channel.map(mode, HEADER_SIZE_IN_BYTES + (index << 3), (long) length << 3).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+    }
+
+}
@@ -0,0 +1,243 @@
+package minchessv0.util;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A transposition table held outside the Java heap, so a table of many
+ * gigabytes doesn't add to the heap size or to the work the garbage collector
+ * does when marking. Entries use the same layout as TTable. The memory is either
+ * anonymous direct memory, which is limited by -XX:MaxDirectMemorySize, or a
+ * file mapped into memory, which can be placed on a hugetlbfs mount (e.g.
+ * /dev/hugepages) to back the table with huge pages
+ */
+public class TTableOffHeap implements TranspositionTable {
+
+    public TTableOffHeap(int sizeInMB, String fileName, ExecutorService pool, int threads) {
+        this.fileName = fileName == null ? "" : fileName;
+        resize(sizeInMB, pool, threads);
+    }
+
+    @Override
+    public long probe(long key) {
+        long offset = (key & this.bucketMask) << BUCKET_SHIFT;
+        ByteBuffer chunk = this.table[(int) (offset >>> CHUNK_SHIFT)];
+        int index = (int) offset & CHUNK_MASK;
+        long data;
+        for(int i = index; i < index + BUCKET_SIZE_IN_BYTES; i += 16) {
+            data = chunk.getLong(i + 8);
+            if((chunk.getLong(i) ^ data) == key) return data;
+        }
+        return 0L;
+    }
+
+    @Override
+    public void save(long key, int eval, int depth, int type, long move) {
+        long offset = (key & this.bucketMask) << BUCKET_SHIFT;
+        ByteBuffer chunk = this.table[(int) (offset >>> CHUNK_SHIFT)];
+        int index = (int) offset & CHUNK_MASK;
+        int replace = index;
+        int replaceValue = Integer.MAX_VALUE;
+        long data;
+        int value;
+        for(int i = index; i < index + BUCKET_SIZE_IN_BYTES; i += 16) {
+            data = chunk.getLong(i + 8);
+            if(data == 0L) {
+                if(replaceValue != Integer.MIN_VALUE) {
+                    replace = i;
+                    replaceValue = Integer.MIN_VALUE;
+                }
+                continue;
+            }
+            if((chunk.getLong(i) ^ data) == key) {
+                if(TTable.keepExisting(data, depth, type, this.generation)) return;
+                if(move == 0L) move = TTable.move(data);
+                replace = i;
+                break;
+            }
+            value = TTable.replaceValue(data, this.generation);
+            if(value < replaceValue) {
+                replace = i;
+                replaceValue = value;
+            }
+        }
+        data = TTable.pack(eval, depth, type, move, this.generation);
+        chunk.putLong(replace, key ^ data);
+        chunk.putLong(replace + 8, data);
+    }
+
+    @Override
+    public void newSearch() {
+        this.generation = (this.generation + 1) & TTable.GENERATION_BITS;
+    }
+
+    @Override
+    public int generation() {
+        return this.generation;
+    }
+
+    @Override
+    public void setGeneration(int generation) {
+        this.generation = generation & TTable.GENERATION_BITS;
+    }
+
+    @Override
+    public int hashfull() {
+        ByteBuffer chunk = this.table[0];
+        int sampleSize = Math.min(TTable.HASHFULL_SAMPLE_SIZE << ENTRY_SHIFT, chunk.capacity());
+        int used = 0;
+        long data;
+        for(int i = 0; i < sampleSize; i += 16) {
+            data = chunk.getLong(i + 8);
+            if(data != 0L && TTable.generation(data) == this.generation) used ++;
+        }
+        return (int) ((long) used * 1000 * 16 / sampleSize);
+    }
+
+    /**
+     * reallocate or remap the table to a new size, any entries are discarded. The
+     * old memory is released when its buffers are garbage collected. A mapped file
+     * is truncated first so the table starts empty. The new table is only swapped
+     * in once it is allocated, so if direct memory runs out the OutOfMemoryError
+     * is thrown and the old table is kept. A file which can't be mapped at the new
+     * size has already been truncated, so it is mapped again at the old size,
+     * empty, before the error is thrown
+     */
+    @Override
+    public void resize(int sizeInMB, ExecutorService pool, int threads) {
+        sizeInMB = Math.max(TTable.MIN_TABLE_SIZE_IN_MB, Math.min(TTable.MAX_TABLE_SIZE_IN_MB, sizeInMB));
+        long bytes = TTable.entries(sizeInMB) << ENTRY_SHIFT;
+        ByteBuffer[] table;
+        if(this.fileName.isEmpty()) {
+            table = allocate(bytes, pool, threads);
+        } else {
+            try {
+                table = map(bytes);
+            } catch(RuntimeException | OutOfMemoryError e) {
+                if(this.table != null) this.table = map(this.table.length * (long) this.table[0].capacity());
+                throw e;
+            }
+        }
+        this.mask = (bytes >>> ENTRY_SHIFT) - 1;
+        this.bucketMask = (bytes >>> BUCKET_SHIFT) - 1;
+        this.sizeInMB = sizeInMB;
+        this.table = table;
+    }
+
+    /**
+     * discard all entries. A mapped file is truncated and mapped again, which
+     * gives back zeroed pages without writing them, direct memory is overwritten
+     * in bulk from a block of zeroes through a duplicate of each chunk, so the
+     * chunk's own position is left alone
+     */
+    @Override
+    public void clear(ExecutorService pool, int threads) {
+        if(!this.fileName.isEmpty()) {
+            resize(this.sizeInMB, pool, threads);
+            return;
+        }
+        ByteBuffer[] table = this.table;
+        int slices = Math.max(1, Math.min(threads, table.length));
+        TTable.runSlices(pool, slices, slice -> {
+            for(int i = slice; i < table.length; i += slices) {
+                ByteBuffer chunk = table[i].duplicate();
+                chunk.clear();
+                while(chunk.hasRemaining()) {
+                    chunk.put(ZEROES, 0, Math.min(ZEROES.length, chunk.remaining()));
+                }
+            }
+        });
+    }
+
+    @Override
+    public int sizeInMB() {
+        return this.sizeInMB;
+    }
+
+    @Override
+    public long length() {
+        return (this.mask + 1) << 1;
+    }
+
+    @Override
+    public void copyTo(long index, LongBuffer buffer) {
+        while(buffer.hasRemaining()) {
+            LongBuffer chunk = chunkView(index);
+            chunk.limit(Math.min(chunk.capacity(), chunk.position() + buffer.remaining()));
+            index += chunk.remaining();
+            buffer.put(chunk);
+        }
+    }
+
+    @Override
+    public void copyFrom(long index, LongBuffer buffer) {
+        while(buffer.hasRemaining()) {
+            LongBuffer chunk = chunkView(index);
+            int length = Math.min(chunk.remaining(), buffer.remaining());
+            LongBuffer source = buffer.slice();
+            source.limit(length);
+            chunk.put(source);
+            buffer.position(buffer.position() + length);
+            index += length;
+        }
+    }
+
+    private static final int ENTRY_SHIFT = 4;
+    private static final int BUCKET_SHIFT = 6;
+    private static final int BUCKET_SIZE_IN_BYTES = 1 << BUCKET_SHIFT;
+    private static final int CHUNK_SHIFT = 26;
+    private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+    private static final byte[] ZEROES = new byte[1 << 16];
+
+    private final String fileName;
+    private ByteBuffer[] table;
+    private long mask;
+    private long bucketMask;
+    private int sizeInMB;
+    private int generation;
+
+    /**
+     * a view of the chunk holding a long index as longs, positioned at the index
+     */
+    private static ByteBuffer[] allocate(long bytes, ExecutorService pool, int threads) {
+        int chunkLength = (int) Math.min(bytes, 1L << CHUNK_SHIFT);
+        ByteBuffer[] table = new ByteBuffer[(int) (bytes / chunkLength)];
+        int slices = Math.max(1, Math.min(threads, table.length));
+        TTable.runSlices(pool, slices, slice -> {
+            for(int i = slice; i < table.length; i += slices) {
+                table[i] = ByteBuffer.allocateDirect(chunkLength).order(ByteOrder.nativeOrder());
+            }
+        });
+        return table;
+    }
+
+    /**
+     * truncate the hash file and map it in chunks
+     */
+    private ByteBuffer[] map(long bytes) {
+        int chunkLength = (int) Math.min(bytes, 1L << CHUNK_SHIFT);
+        ByteBuffer[] table = new ByteBuffer[(int) (bytes / chunkLength)];
+        try(RandomAccessFile file = new RandomAccessFile(this.fileName, "rw"); FileChannel channel = file.getChannel()) {
+            channel.truncate(0L);
+            for(int i = 0; i < table.length; i ++) {
+                table[i] = channel.map(FileChannel.MapMode.READ_WRITE, (long) i * chunkLength, chunkLength).order(ByteOrder.nativeOrder());
+            }
+        } catch(IOException e) {
+            throw new RuntimeException("Unable to map hash file " + this.fileName, e);
+        }
+        return table;
+    }
+
+    private LongBuffer chunkView(long index) {
+        long offset = index << 3;
+        LongBuffer chunk = this.table[(int) (offset >>> CHUNK_SHIFT)].duplicate().order(ByteOrder.nativeOrder()).asLongBuffer();
+        chunk.position(((int) offset & CHUNK_MASK) >>> 3);
+        return chunk;
+    }
+
+}
@@ -0,0 +1,21 @@
+package minchessv0.util;
+
+import java.nio.LongBuffer;
+import java.util.concurrent.ExecutorService;
+
+public interface TranspositionTable {
+
+    public long probe(long key);
+    public void save(long key, int eval, int depth, int type, long move);
+    public void resize(int sizeInMB, ExecutorService pool, int threads);
+    public void clear(ExecutorService pool, int threads);
+    public int sizeInMB();
+    public void newSearch();
+    public int generation();
+    public void setGeneration(int generation);
+    public int hashfull();
+    public long length();
+    public void copyTo(long index, LongBuffer buffer);
+    public void copyFrom(long index, LongBuffer buffer);
+
+}
@@ -302,6 +302,31 @@ public final class Zobrist {
 		return ENPASSANT_FILE[e & 7];
 	}
 
+	/**
+	 * a checksum of every zobrist key, saved with a transposition table snapshot
+	 * so that a snapshot written by a build with different keys is never loaded
+	 *
+	 * @return the checksum of all zobrist keys
+	 */
+	public final static long checksum() {
+		long checksum = 0L;
+		for(long[][] piece : PIECE) {
+			for(long[] player : piece) {
+				for(long key : player) {
+					checksum = Long.rotateLeft(checksum, 1) ^ key;
+				}
+			}
+		}
+		for(int player = 0; player < 2; player ++) {
+			checksum = Long.rotateLeft(checksum, 1) ^ KING_SIDE[player];
+			checksum = Long.rotateLeft(checksum, 1) ^ QUEEN_SIDE[player];
+		}
+		for(long key : ENPASSANT_FILE) {
+			checksum = Long.rotateLeft(checksum, 1) ^ key;
+		}
+		return Long.rotateLeft(checksum, 1) ^ WHITEMOVE;
+	}
+
 	public final static long getKey(int[] squares, boolean whiteToMove, boolean whiteKingSide, boolean whiteQueenSide, boolean blackKingSide, boolean blackQueenSide, int eSquare) {
 		long key = 0;
 		for(int i = 0; i < 64; i ++) {